@@ -64,6 +64,10 @@ public class Aircraft implements Serializable {
         }
         return rows; 
     }
+    public void setRows(int rows) { this.rows = rows; }
+    // The rows as stored, 0 if never set; unlike getRows() this never derives them
+    public int getStoredRows() { return rows; }
     
     public int getSeatsPerRow() { return seatsPerRow; }
+    public void setSeatsPerRow(int seatsPerRow) { this.seatsPerRow = seatsPerRow; }
 }
\ No newline at end of file
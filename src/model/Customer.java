@@ -1,21 +1,22 @@
 package model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Customer extends User {
+    // Copy-on-write, so the list can be saved or shown while a booking adds to it
     private List<Ticket> tickets;
 
     // Default constructor for JSON parsing
     public Customer() {
         super();
-        this.tickets = new ArrayList<>();
+        this.tickets = new CopyOnWriteArrayList<>();
     }
 
     public Customer(String id, String name, String email, String phone, 
                    String gender, String password) {
         super(id, name, email, phone, gender, password, "CUSTOMER");
-        this.tickets = new ArrayList<>();
+        this.tickets = new CopyOnWriteArrayList<>();
     }
 
     public void addTicket(Ticket ticket) {
@@ -27,6 +28,6 @@ public class Customer extends User {
     }
     
     public void setTickets(List<Ticket> tickets) {
-        this.tickets = tickets;
+        this.tickets = tickets != null ? new CopyOnWriteArrayList<>(tickets) : null;
     }
 }
\ No newline at end of file
@@ -16,7 +16,12 @@ public class Flight implements Serializable {
     private LocalDateTime arrivalTime;
     private String status; // SCHEDULED, BOARDING, DEPARTED, ARRIVED, CANCELLED, DELAYED
     private double price;
-    private List<FlightSeat> seats;
+    private volatile List<FlightSeat> seats;
+    // Seat counts from the flight header, used while the seat list is not loaded (-1 if unknown)
+    private transient int availableSeatsCount = -1;
+    private transient int soldSeatsCount = -1;
+    // Seat lookup by number, rebuilt when the seat list is replaced or grows
+    private transient volatile SeatIndex seatIndex;
 
     // Default constructor for JSON parsing
     public Flight() {
@@ -67,7 +72,18 @@ public class Flight implements Serializable {
     public void setPrice(double price) { this.price = price; }
     
     public List<FlightSeat> getSeats() { return seats; }
-    public void setSeats(List<FlightSeat> seats) { this.seats = seats; }
+    public synchronized void setSeats(List<FlightSeat> seats) {
+        if (seats != this.seats) {
+            this.seatIndex = null;
+        }
+        this.seats = seats;
+    }
+    
+    // Set the seat list together with an index already built over it
+    public synchronized void attachSeats(SeatIndex index) {
+        this.seats = index.getSeats();
+        this.seatIndex = index;
+    }
     
     // Helper methods for seat management
     public void addSeat(FlightSeat seat) {
@@ -79,10 +95,25 @@ public class Flight implements Serializable {
     
     public FlightSeat getSeatByNumber(String seatNumber) {
         if (this.seats == null) return null;
-        return this.seats.stream()
-                .filter(seat -> seat.getSeatNumber().equals(seatNumber))
-                .findFirst()
-                .orElse(null);
+        return getSeatIndex().get(seatNumber);
+    }
+    
+    // Index (and seat inventory) over the current seat list. Built under the flight's lock
+    // so concurrent buyers always share one inventory.
+    public SeatIndex getSeatIndex() {
+        SeatIndex index = this.seatIndex;
+        if (index != null && index.covers(this.seats)) {
+            return index;
+        }
+        synchronized (this) {
+            List<FlightSeat> current = this.seats != null ? this.seats : new ArrayList<>();
+            index = this.seatIndex;
+            if (index == null || !index.covers(current)) {
+                index = SeatIndex.of(current);
+                this.seatIndex = index;
+            }
+            return index;
+        }
     }
     
     public List<FlightSeat> getAvailableSeats() {
@@ -99,11 +130,36 @@ public class Flight implements Serializable {
                 .collect(java.util.stream.Collectors.toList());
     }
     
+    public boolean isSeatListLoaded() {
+        return this.seats != null && !this.seats.isEmpty();
+    }
+    
+    // True if the counts below are meaningful: seats are loaded or header counts were set
+    public boolean hasSeatCounts() {
+        return isSeatListLoaded() || availableSeatsCount >= 0;
+    }
+    
+    public void setSeatCounts(int availableSeatsCount, int soldSeatsCount) {
+        this.availableSeatsCount = availableSeatsCount;
+        this.soldSeatsCount = soldSeatsCount;
+    }
+    
     public int getAvailableSeatsCount() {
-        return getAvailableSeats().size();
+        if (!isSeatListLoaded() && availableSeatsCount >= 0) {
+            return availableSeatsCount;
+        }
+        return getSeatIndex().getInventory().getAvailableCount();
     }
     
     public int getSoldSeatsCount() {
-        return getSoldSeats().size();
+        if (!isSeatListLoaded() && soldSeatsCount >= 0) {
+            return soldSeatsCount;
+        }
+        return getSeatIndex().getInventory().getSoldCount();
+    }
+    
+    // Seats on hold; they count as neither available nor sold
+    public int getHeldSeatsCount() {
+        return isSeatListLoaded() ? getSeatIndex().getInventory().getHeldCount() : 0;
     }
 }
\ No newline at end of file
@@ -5,7 +5,7 @@ import java.io.Serializable;
 public class FlightSeat implements Serializable {
     private static final long serialVersionUID = 1L;
     private String seatNumber;
-    private String status; // AVAILABLE, SOLD
+    private String status; // AVAILABLE, BOOKED (held, not persisted), SOLD
     private String passengerId;
 
     // Default constructor for JSON parsing
@@ -37,5 +37,6 @@ public class FlightSeat implements Serializable {
     public void setPassengerId(String passengerId) { this.passengerId = passengerId; }
     
     public boolean isAvailable() { return "AVAILABLE".equals(status); }
+    public boolean isBooked() { return "BOOKED".equals(status); }
     public boolean isSold() { return "SOLD".equals(status); }
 } 
\ No newline at end of file
@@ -0,0 +1,137 @@
+package model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Lookup of a flight's seats by seat number without scanning the seat list. Seat numbers
+// are parsed into row and column ("12C" -> row 12, column C) and the seats' list positions
+// stored in a row-major array sized from the highest row and column present, so a lookup
+// is a parse and one array access. Numbers that do not follow the row + letter pattern
+// are kept in a small map instead. The index also carries the seat inventory bitmap,
+// which is addressed by the same positions.
+public class SeatIndex {
+
+    private static final int MAX_ROW = 999;
+    private static final int NOT_REGULAR = -1;
+
+    private final List<FlightSeat> seats;
+    private final int size;
+    private final int columns;
+    private final int[] slots; // list position + 1, 0 for no seat
+    private final Map<String, Integer> others = new HashMap<>();
+    private final SeatInventory inventory;
+
+    private SeatIndex(List<FlightSeat> seats) {
+        this.seats = seats;
+        this.size = seats.size();
+
+        int maxRow = 0;
+        int maxColumn = 0;
+        for (FlightSeat seat : seats) {
+            int position = parse(seat.getSeatNumber());
+            if (position != NOT_REGULAR) {
+                maxRow = Math.max(maxRow, position >> 5);
+                maxColumn = Math.max(maxColumn, position & 31);
+            }
+        }
+        this.columns = maxColumn + 1;
+        this.slots = new int[maxRow * columns];
+
+        // Of several seats with the same number the first is kept, as a scan would find it
+        for (int i = 0; i < size; i++) {
+            String seatNumber = seats.get(i).getSeatNumber();
+            int slot = slot(seatNumber);
+            if (slot >= 0) {
+                if (slots[slot] == 0) {
+                    slots[slot] = i + 1;
+                }
+            } else {
+                others.putIfAbsent(seatNumber, i);
+            }
+        }
+        this.inventory = SeatInventory.of(seats);
+    }
+
+    public static SeatIndex of(List<FlightSeat> seats) {
+        return new SeatIndex(seats);
+    }
+
+    // True if this index was built from list as it is now. Seat lists are only replaced
+    // whole or appended to, so a list of the same identity and size has the same seats.
+    public boolean covers(List<FlightSeat> list) {
+        return list == seats && list.size() == size;
+    }
+
+    public List<FlightSeat> getSeats() {
+        return seats;
+    }
+
+    public SeatInventory getInventory() {
+        return inventory;
+    }
+
+    public FlightSeat get(String seatNumber) {
+        int position = positionOf(seatNumber);
+        return position >= 0 ? seats.get(position) : null;
+    }
+
+    // Seat at a 1-based row and 0-based column (0 = A), or null
+    public FlightSeat get(int row, int column) {
+        if (row < 1 || column < 0 || column >= columns) {
+            return null;
+        }
+        int slot = (row - 1) * columns + column;
+        return slot < slots.length && slots[slot] != 0 ? seats.get(slots[slot] - 1) : null;
+    }
+
+    // Position of a seat in the seat list (and the inventory), or -1
+    public int positionOf(String seatNumber) {
+        if (seatNumber == null) {
+            return -1;
+        }
+        int slot = slot(seatNumber);
+        if (slot >= 0) {
+            return slots[slot] - 1;
+        }
+        Integer position = others.get(seatNumber);
+        return position != null ? position : -1;
+    }
+
+    // Array slot of a regular seat number, or -1 for other numbers and for seats beyond
+    // the highest row or column present
+    private int slot(String seatNumber) {
+        int position = parse(seatNumber);
+        if (position == NOT_REGULAR) {
+            return -1;
+        }
+        int column = position & 31;
+        int slot = ((position >> 5) - 1) * columns + column;
+        return column < columns && slot < slots.length ? slot : -1;
+    }
+
+    // row << 5 | column for numbers of the form <row><letter> ("1A" .. "999Z"); rows
+    // have no leading zeros so every seat has exactly one spelling
+    private static int parse(String seatNumber) {
+        if (seatNumber == null) {
+            return NOT_REGULAR;
+        }
+        int length = seatNumber.length();
+        if (length < 2 || length > 4) {
+            return NOT_REGULAR;
+        }
+        char letter = seatNumber.charAt(length - 1);
+        if (letter < 'A' || letter > 'Z' || seatNumber.charAt(0) == '0') {
+            return NOT_REGULAR;
+        }
+        int row = 0;
+        for (int i = 0; i < length - 1; i++) {
+            char c = seatNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_REGULAR;
+            }
+            row = row * 10 + (c - '0');
+        }
+        return row <= MAX_ROW ? row << 5 | (letter - 'A') : NOT_REGULAR;
+    }
+}
@@ -0,0 +1,197 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Which seats of a flight are taken, as one bit per seat (by position in the seat list).
+// Claims set the bits of one or several seats with compare-and-set, all or nothing and
+// without locking, so two buyers can never both get the same seat. A second bit per seat
+// marks the taken seats that are only held, not sold yet. Both bits of a seat share one
+// word (32 seats per word: taken bits low, held bits high), so a hold takes its seats
+// and marks them held in the same compare-and-set and no reader sees one without the
+// other. Counts are popcounts over the words. FlightSeat status stays the persisted form;
+// FlightService keeps the two in step.
+public class SeatInventory {
+
+    private static final int SEATS_PER_WORD = 32;
+    private static final long TAKEN_BITS = 0xFFFFFFFFL;
+
+    private final AtomicLongArray words;
+    private final int seatCount;
+
+    private SeatInventory(int seatCount) {
+        this.seatCount = seatCount;
+        this.words = new AtomicLongArray((seatCount + SEATS_PER_WORD - 1) / SEATS_PER_WORD);
+    }
+
+    // Inventory of seats as they are now: every seat that is not available is taken
+    public static SeatInventory of(List<FlightSeat> seats) {
+        SeatInventory inventory = new SeatInventory(seats.size());
+        for (int i = 0; i < seats.size(); i++) {
+            FlightSeat seat = seats.get(i);
+            if (!seat.isAvailable()) {
+                inventory.update(i / SEATS_PER_WORD, 0, seat.isBooked() ? both(bit(i)) : bit(i));
+            }
+        }
+        return inventory;
+    }
+
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    public boolean isTaken(int position) {
+        return (words.get(position / SEATS_PER_WORD) & bit(position)) != 0;
+    }
+
+    // Take every seat at positions, or none of them if any is taken or out of range.
+    // Words are claimed in ascending order and rolled back on conflict, so a competing
+    // claim may briefly see seats of a claim that then fails, but never sells them.
+    public boolean claim(int... positions) {
+        return claim(positions, false);
+    }
+
+    // Claim the seats at positions as held: taken, but not counted as sold
+    public boolean hold(int... positions) {
+        return claim(positions, true);
+    }
+
+    private boolean claim(int[] positions, boolean held) {
+        int[] sorted = sortedPositions(positions);
+        if (sorted == null) {
+            return false;
+        }
+        int claimedUpTo = 0;
+        int i = 0;
+        while (i < sorted.length) {
+            int word = sorted[i] / SEATS_PER_WORD;
+            long mask = 0;
+            while (i < sorted.length && sorted[i] / SEATS_PER_WORD == word) {
+                mask |= bit(sorted[i++]);
+            }
+            if (!setBits(word, mask, held ? both(mask) : mask)) {
+                clearWords(sorted, claimedUpTo);
+                return false;
+            }
+            claimedUpTo = i;
+        }
+        return true;
+    }
+
+    public boolean isHeld(int position) {
+        return (words.get(position / SEATS_PER_WORD) & heldBit(position)) != 0;
+    }
+
+    // Turn held seats into sold ones; they stay taken
+    public void confirm(int... positions) {
+        for (int position : positions) {
+            update(position / SEATS_PER_WORD, heldBit(position), 0);
+        }
+    }
+
+    // Make the seats at positions available again, held or sold
+    public void release(int... positions) {
+        int[] sorted = sortedPositions(positions);
+        if (sorted != null) {
+            clearWords(sorted, sorted.length);
+        }
+    }
+
+    // Record a seat's state as changed outside of claim/release (e.g. a journal replay);
+    // this ends any hold on it
+    public void set(int position, boolean isTaken) {
+        long mask = bit(position);
+        update(position / SEATS_PER_WORD, both(mask), isTaken ? mask : 0);
+    }
+
+    // Seats sold or held
+    public int getTakenCount() {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i) & TAKEN_BITS);
+        }
+        return count;
+    }
+
+    public int getHeldCount() {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i) >>> SEATS_PER_WORD);
+        }
+        return count;
+    }
+
+    // Counted from one read of each word, so a hold being confirmed or taken is never
+    // counted as sold on the way
+    public int getSoldCount() {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            count += Long.bitCount(word & TAKEN_BITS) - Long.bitCount(word >>> SEATS_PER_WORD);
+        }
+        return count;
+    }
+
+    public int getAvailableCount() {
+        return seatCount - getTakenCount();
+    }
+
+    // Clear the bits of clear, then set those of set, in one compare-and-set
+    private void update(int word, long clear, long set) {
+        long old;
+        do {
+            old = words.get(word);
+        } while (!words.compareAndSet(word, old, (old & ~clear) | set));
+    }
+
+    // Set the bits of set in word if none of the taken bits in mask are set yet
+    private boolean setBits(int word, long mask, long set) {
+        while (true) {
+            long old = words.get(word);
+            if ((old & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(word, old, old | set)) {
+                return true;
+            }
+        }
+    }
+
+    // Make the seats of sorted[0 .. end) available, held or not
+    private void clearWords(int[] sorted, int end) {
+        int i = 0;
+        while (i < end) {
+            int word = sorted[i] / SEATS_PER_WORD;
+            long mask = 0;
+            while (i < end && sorted[i] / SEATS_PER_WORD == word) {
+                mask |= bit(sorted[i++]);
+            }
+            update(word, both(mask), 0);
+        }
+    }
+
+    // Sorted copy of positions, or null if one is out of range
+    private int[] sortedPositions(int[] positions) {
+        int[] sorted = positions.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && (sorted[0] < 0 || sorted[sorted.length - 1] >= seatCount)) {
+            return null;
+        }
+        return sorted;
+    }
+
+    // Taken bit of a seat
+    private static long bit(int position) {
+        return 1L << (position % SEATS_PER_WORD);
+    }
+
+    private static long heldBit(int position) {
+        return bit(position) << SEATS_PER_WORD;
+    }
+
+    // Taken bits of mask together with their held bits
+    private static long both(long mask) {
+        return mask | mask << SEATS_PER_WORD;
+    }
+}
@@ -0,0 +1,149 @@
+package service;
+
+import model.Flight;
+import model.FlightSeat;
+import model.Ticket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Optional booking pipeline behind BookingService's purchases (booking.pipeline=true).
+// Purchases are routed by flight id to one of a few partitions, and each partition has a
+// single writer at a time: it takes what has queued up (at most booking.batchSize), sells
+// the seats of each flight's purchases under one lock and one journal record, and records
+// the batch's tickets with one journal write per file. Under a surge the cost of locking
+// and syncing is shared by the batch, and buyers of a hot flight queue instead of
+// contending. Writers run on a shared pool, so idle engines hold no threads.
+final class BookingEngine {
+
+    private static final int PARTITIONS = Integer.getInteger("booking.partitions", Runtime.getRuntime().availableProcessors());
+    private static final int MAX_BATCH = Integer.getInteger("booking.batchSize", 256);
+
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "booking-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final class Purchase {
+        final String customerId;
+        final String flightId;
+        final List<String> seatNumbers;
+        final double pricePerSeat;
+        final CompletableFuture<String> pnr = new CompletableFuture<>();
+
+        Purchase(String customerId, String flightId, List<String> seatNumbers, double pricePerSeat) {
+            this.customerId = customerId;
+            this.flightId = flightId;
+            this.seatNumbers = seatNumbers;
+            this.pricePerSeat = pricePerSeat;
+        }
+    }
+
+    private static final class Partition {
+        final Queue<Purchase> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean writing = new AtomicBoolean();
+    }
+
+    private final BookingService bookingService;
+    private final FlightService flightService;
+    private final Partition[] partitions = new Partition[Math.max(1, PARTITIONS)];
+
+    BookingEngine(BookingService bookingService, FlightService flightService) {
+        this.bookingService = bookingService;
+        this.flightService = flightService;
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean("booking.pipeline");
+    }
+
+    // Queue a purchase of all the seats, or none; completes with the PNR, or null if the
+    // flight cannot be booked or a seat is not available
+    CompletableFuture<String> submit(String customerId, String flightId, List<String> seatNumbers, double pricePerSeat) {
+        Purchase purchase = new Purchase(customerId, flightId, new ArrayList<>(seatNumbers), pricePerSeat);
+        Partition partition = partitions[(flightId != null ? flightId.hashCode() & 0x7fffffff : 0) % partitions.length];
+        partition.queue.add(purchase);
+        startWriter(partition);
+        return purchase.pnr;
+    }
+
+    private void startWriter(Partition partition) {
+        if (partition.writing.compareAndSet(false, true)) {
+            WRITERS.execute(() -> write(partition));
+        }
+    }
+
+    // Write one batch, then hand the partition back to the pool so partitions take turns
+    private void write(Partition partition) {
+        List<Purchase> batch = new ArrayList<>();
+        Purchase purchase;
+        while (batch.size() < MAX_BATCH && (purchase = partition.queue.poll()) != null) {
+            batch.add(purchase);
+        }
+        try {
+            if (!batch.isEmpty()) {
+                process(batch);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error processing bookings: " + e.getMessage());
+        } finally {
+            for (Purchase unfinished : batch) {
+                unfinished.pnr.complete(null);
+            }
+            partition.writing.set(false);
+            if (!partition.queue.isEmpty()) {
+                startWriter(partition);
+            }
+        }
+    }
+
+    private void process(List<Purchase> batch) {
+        // Purchases by flight, in arrival order
+        Map<String, List<Purchase>> byFlight = new LinkedHashMap<>();
+        for (Purchase purchase : batch) {
+            byFlight.computeIfAbsent(purchase.flightId, id -> new ArrayList<>()).add(purchase);
+        }
+
+        List<Purchase> sold = new ArrayList<>();
+        List<Ticket> tickets = new ArrayList<>();
+        for (Map.Entry<String, List<Purchase>> flightPurchases : byFlight.entrySet()) {
+            Flight flight = flightService.getFlightById(flightPurchases.getKey());
+            if (flight == null || !BookingService.isFlightBookable(flight)) {
+                continue;
+            }
+            List<List<String>> seatNumbers = new ArrayList<>();
+            List<String> passengerIds = new ArrayList<>();
+            for (Purchase purchase : flightPurchases.getValue()) {
+                seatNumbers.add(purchase.seatNumbers);
+                passengerIds.add(purchase.customerId);
+            }
+            List<List<FlightSeat>> claimed = flightService.claimSeatsBatch(flight.getId(), seatNumbers, passengerIds);
+            for (int i = 0; i < claimed.size(); i++) {
+                if (claimed.get(i) != null) {
+                    Purchase purchase = flightPurchases.getValue().get(i);
+                    sold.add(purchase);
+                    tickets.add(bookingService.newTicket(purchase.customerId, flight, purchase.seatNumbers, purchase.pricePerSeat));
+                }
+            }
+        }
+
+        bookingService.recordTickets(tickets);
+        // PNRs are final once recorded (a taken one is replaced)
+        for (int i = 0; i < sold.size(); i++) {
+            sold.get(i).pnr.complete(tickets.get(i).getPnr());
+        }
+    }
+}
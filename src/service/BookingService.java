@@ -1,55 +1,201 @@
 package service;
 
 import model.*;
+import util.DataDirectoryWatcher;
+import util.IdAllocator;
+import util.Journal;
 import util.JsonUtil;
+import util.TimingWheel;
+import util.WriteBehind;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+// Seats are claimed through FlightService.claimSeats without any lock of this service.
+// Recording or cancelling a ticket takes its customer's stripe in customerLocks, so
+// bookings of different customers run in parallel. Reloads are synchronized and run
+// exclusively. Readers take no lock beyond a customer's ticket list: the ticket list is
+// a concurrent queue and the indexes are concurrent maps. Seat holds are changed under
+// their customer's stripe too and expire through a timing wheel. With booking.pipeline
+// set, purchases are queued and batched by BookingEngine. Lock order is this service,
+// then customer stripes, then FlightService or UserService.
 public class BookingService {
     private FlightService flightService;
     private UserService userService;
-    private List<Ticket> tickets;
-    private static final String TICKETS_FILE = "tickets.json";
+    // All tickets in issue order; appending does not copy, and snapshots are taken only
+    // when needed (getAllTickets, file snapshots)
+    private volatile Queue<Ticket> tickets;
+    // Tickets by PNR (the first ticket, should old data hold duplicates)
+    private volatile Map<String, Ticket> ticketsByPnr;
+    // Tickets of each customer, in issue order. Each list is synchronized: appends are
+    // amortised O(1) and readers copy it under its lock.
+    private volatile Map<String, List<Ticket>> ticketsByCustomer;
+    // Ids of all tickets, so new ids can skip those of old data
+    private volatile Set<String> ticketIds;
+    static final String TICKETS_FILE = "tickets.json";
+    private static final String OP_TICKET = "TICKET";
+    private static final long HOLD_TICK_MILLIS = 100;
+    private static final long DEFAULT_HOLD_MILLIS = Long.getLong("booking.holdMs", 10 * 60 * 1000L);
+    private static final IdAllocator PNRS = IdAllocator.forSequence("pnr", "", IdAllocator.LETTERS_AND_DIGITS, 6);
+    private static final IdAllocator TICKET_IDS = IdAllocator.forSequence("ticket", "TKT", IdAllocator.HEX_DIGITS, 8);
+    private final Journal ticketJournal = Journal.forFile(TICKETS_FILE);
+    private final LoadedFiles loadedFiles = new LoadedFiles();
+    private final StripedLocks customerLocks = new StripedLocks();
+    private final AtomicBoolean catchingUp = new AtomicBoolean();
+    // Booking pipeline for purchases, if enabled
+    private final BookingEngine engine;
+    // Seat holds by id; each expires through holdExpiry unless confirmed or released first
+    private final Map<String, SeatHold> holds = new ConcurrentHashMap<>();
+    private final TimingWheel<SeatHold> holdExpiry = new TimingWheel<>(HOLD_TICK_MILLIS, this::expireHold);
+    // Held here so it lives exactly as long as this service (the watcher holds it weakly)
+    private final DataDirectoryWatcher.Listener fileListener = this::dataFilesChanged;
 
     public BookingService(FlightService flightService) {
         this.flightService = flightService;
         this.userService = new UserService(); // Initialize UserService
-        this.tickets = JsonUtil.loadFromFile(TICKETS_FILE, Ticket.class);
-        
-        // WORKAROUND: Fix seat numbers that weren't parsed correctly
-        fixTicketSeatNumbers();
+        this.engine = BookingEngine.isEnabled() ? new BookingEngine(this, flightService) : null;
+        loadTickets();
+        DataDirectoryWatcher.addListener(fileListener);
     }
 
     // Constructor with UserService dependency injection
     public BookingService(FlightService flightService, UserService userService) {
+        this(flightService, userService, null);
+    }
+
+    // Takes the tickets already parsed by loader, if given
+    BookingService(FlightService flightService, UserService userService, StartupLoader loader) {
+        loadedFiles.preloadFrom(loader);
         this.flightService = flightService;
         this.userService = userService;
-        this.tickets = JsonUtil.loadFromFile(TICKETS_FILE, Ticket.class);
+        this.engine = BookingEngine.isEnabled() ? new BookingEngine(this, flightService) : null;
+        loadTickets();
+        DataDirectoryWatcher.addListener(fileListener);
+    }
+
+    // Called on the watcher thread when files in data/ change. Customers are reloaded by
+    // the UserService's own listener.
+    private synchronized void dataFilesChanged(Set<String> fileNames) {
+        if ((fileNames.isEmpty() || fileNames.contains(TICKETS_FILE)) && loadedFiles.isStale(TICKETS_FILE)) {
+            customerLocks.runExclusively(this::loadTickets);
+        }
+    }
+
+    private void loadTickets() {
+        // Pending background writes may hold changes newer than the files
+        WriteBehind.flush();
+        
+        List<Ticket> loaded = loadedFiles.load(TICKETS_FILE, Ticket.class);
+        // Apply tickets issued or changed since the last snapshot
+        for (Journal.Entry entry : ticketJournal.readEntries()) {
+            if (OP_TICKET.equals(entry.getOp())) {
+                Ticket ticket = JsonUtil.fromJson(entry.getPayload(), Ticket.class);
+                if (ticket != null) {
+                    replaceOrAddTicket(loaded, ticket);
+                }
+            }
+        }
         
         // WORKAROUND: Fix seat numbers that weren't parsed correctly
-        fixTicketSeatNumbers();
+        fixTicketSeatNumbers(loaded);
+        this.ticketsByPnr = indexByPnr(loaded);
+        this.ticketsByCustomer = indexByCustomer(loaded);
+        this.ticketIds = idsOf(loaded);
+        this.tickets = new ConcurrentLinkedQueue<>(loaded);
+    }
+
+    private static Map<String, Ticket> indexByPnr(List<Ticket> list) {
+        Map<String, Ticket> index = new ConcurrentHashMap<>(Math.max(16, list.size() * 4 / 3 + 1));
+        for (Ticket ticket : list) {
+            if (ticket.getPnr() != null) {
+                index.putIfAbsent(ticket.getPnr(), ticket);
+            }
+        }
+        return index;
+    }
+
+    private static Set<String> idsOf(List<Ticket> list) {
+        Set<String> ids = ConcurrentHashMap.newKeySet(Math.max(16, list.size()));
+        for (Ticket ticket : list) {
+            ids.add(ticket.getId());
+        }
+        return ids;
     }
 
+    private static Map<String, List<Ticket>> indexByCustomer(List<Ticket> list) {
+        Map<String, List<Ticket>> index = new ConcurrentHashMap<>();
+        for (Ticket ticket : list) {
+            if (ticket.getCustomerId() != null) {
+                index.computeIfAbsent(ticket.getCustomerId(), id -> Collections.synchronizedList(new ArrayList<>())).add(ticket);
+            }
+        }
+        return index;
+    }
+
+    private static void replaceOrAddTicket(List<Ticket> list, Ticket ticket) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getId().equals(ticket.getId())) {
+                list.set(i, ticket);
+                return;
+            }
+        }
+        list.add(ticket);
+    }
+
+    // Snapshot tickets.json; the journal is only compacted once the snapshot is on disk.
+    // If another instance journaled tickets since these were loaded, nothing is written:
+    // they are reloaded in the background and a later change compacts (see WriteBehind).
     private void saveTickets() {
-        JsonUtil.saveToFile(tickets, TICKETS_FILE);
+        if (!WriteBehind.markDirty(TICKETS_FILE, tickets, ticketJournal, () -> !loadedFiles.isStale(TICKETS_FILE))) {
+            WriteBehind.catchUp(catchingUp, this::reloadTickets);
+        }
     }
 
-    // Method to reload data from files (useful for UI refresh)
-    public void reloadData() {
-        this.tickets = JsonUtil.loadFromFile(TICKETS_FILE, Ticket.class);
+    // Record a new or changed ticket as one appended journal record
+    private void journalTicket(Ticket ticket) {
+        loadedFiles.changed(TICKETS_FILE);
+        if (!ticketJournal.append(OP_TICKET, ticket.getId(), JsonUtil.toJson(ticket)) || ticketJournal.needsCompaction()) {
+            saveTickets();
+        }
+    }
+
+    private synchronized void reloadTickets() {
+        if (loadedFiles.isStale(TICKETS_FILE)) {
+            customerLocks.runExclusively(this::loadTickets);
+        }
+    }
+
+    // True if tickets or users changed since they were loaded (see FlightService)
+    public boolean hasChangedFiles() {
+        return loadedFiles.isStale(TICKETS_FILE) || (userService != null && userService.hasChangedFiles());
+    }
+
+    // Method to reload data from files (useful for UI refresh).
+    // Only files changed since they were loaded are parsed again.
+    public synchronized void reloadData() {
+        reloadTickets();
         // Also reload UserService data
         if (userService != null) {
             userService.reloadData();
         }
-        // Fix seat numbers after reload
-        fixTicketSeatNumbers();
     }
 
     public String purchaseSeat(String customerId, String flightId, String seatNumber, double price) {
+        if (engine != null) {
+            return engine.submit(customerId, flightId, List.of(seatNumber), price).join();
+        }
         Flight flight = flightService.getFlightById(flightId);
         if (flight == null) {
             return null;
@@ -60,51 +206,19 @@ public class BookingService {
             return null; // Flight not bookable due to status
         }
 
-        // Check if seat is available
-        FlightSeat seat = flightService.getSeatByFlightAndNumber(flightId, seatNumber);
-        if (seat == null || !seat.isAvailable()) {
+        // Purchase the seat (mark as sold) if it is available
+        if (flightService.claimSeats(flightId, List.of(seatNumber), customerId) == null) {
             return null; // Seat not available
         }
 
-        // Purchase the seat (mark as sold)
-        seat.setStatus("SOLD");
-        seat.setPassengerId(customerId);
-        
-        // Update seat
-        flightService.updateFlightSeat(seat, flightId);
-
-        // Create ticket
-        String ticketId = "TKT" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        String pnr = generatePNR();
-        
-        Ticket ticket = new Ticket(ticketId, pnr, customerId, flightId, seatNumber, price);
-        ticket.setStatus("PURCHASED"); // Change status to purchased instead of booked
-        
-        // Set gate and terminal info if available
-        if (flight.getGateId() != null) {
-            Gate gate = flightService.getGateById(flight.getGateId());
-            if (gate != null) {
-                ticket.setGateNumber(gate.getGateNumber());
-                ticket.setTerminal(gate.getTerminal());
-            }
-        }
-        
-        tickets.add(ticket);
-        
-        // Also add ticket to customer's ticket list
-        Customer customer = userService.getCustomerById(customerId);
-        if (customer != null) {
-            customer.addTicket(ticket);
-            userService.updateCustomer(customer);
-        }
-        
-        saveTickets();
-        
-        return pnr;
+        return issueTicket(customerId, flight, List.of(seatNumber), price);
     }
 
     // New method to purchase multiple seats with the same PNR
     public String purchaseMultipleSeats(String customerId, String flightId, List<String> seatNumbers, double pricePerSeat) {
+        if (engine != null) {
+            return engine.submit(customerId, flightId, seatNumbers, pricePerSeat).join();
+        }
         Flight flight = flightService.getFlightById(flightId);
         if (flight == null) {
             return null;
@@ -115,35 +229,46 @@ public class BookingService {
             return null; // Flight not bookable due to status
         }
 
-        // Check if all seats are available first
-        List<FlightSeat> seatsToBook = new ArrayList<>();
-        for (String seatNumber : seatNumbers) {
-            FlightSeat seat = flightService.getSeatByFlightAndNumber(flightId, seatNumber);
-            if (seat == null || !seat.isAvailable()) {
-                return null; // One or more seats not available
-            }
-            seatsToBook.add(seat);
+        // Purchase all seats, or none if one or more are not available
+        if (flightService.claimSeats(flightId, seatNumbers, customerId) == null) {
+            return null;
         }
+        return issueTicket(customerId, flight, seatNumbers, pricePerSeat);
+    }
 
-        // Generate a single PNR and ticket ID
-        String pnr = generatePNR();
-        String ticketId = "TKT" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    // Purchases that complete with the PNR (null if a seat is not available, as above).
+    // With the booking pipeline enabled (booking.pipeline) they are queued and batched,
+    // otherwise they run right away on the calling thread.
+    public CompletableFuture<String> purchaseSeatAsync(String customerId, String flightId, String seatNumber, double price) {
+        if (engine != null) {
+            return engine.submit(customerId, flightId, List.of(seatNumber), price);
+        }
+        return CompletableFuture.completedFuture(purchaseSeat(customerId, flightId, seatNumber, price));
+    }
 
-        // Purchase all seats
-        for (int i = 0; i < seatsToBook.size(); i++) {
-            FlightSeat seat = seatsToBook.get(i);
-            
-            // Mark seat as sold
-            seat.setStatus("SOLD");
-            seat.setPassengerId(customerId);
-            
-            // Update seat
-            flightService.updateFlightSeat(seat, flightId);
+    public CompletableFuture<String> purchaseMultipleSeatsAsync(String customerId, String flightId, List<String> seatNumbers, double pricePerSeat) {
+        if (engine != null) {
+            return engine.submit(customerId, flightId, seatNumbers, pricePerSeat);
         }
+        return CompletableFuture.completedFuture(purchaseMultipleSeats(customerId, flightId, seatNumbers, pricePerSeat));
+    }
+
+    // One ticket for seats already sold to the customer; returns its PNR
+    private String issueTicket(String customerId, Flight flight, List<String> seatNumbers, double pricePerSeat) {
+        Ticket ticket = newTicket(customerId, flight, seatNumbers, pricePerSeat);
+        recordTicket(ticket);
+        return ticket.getPnr();
+    }
+
+    // Ticket for seats sold to a customer, not recorded yet
+    Ticket newTicket(String customerId, Flight flight, List<String> seatNumbers, double pricePerSeat) {
+        String flightId = flight.getId();
+        // Generate a single PNR and ticket ID
+        String ticketId = TICKET_IDS.next(id -> ticketIds.contains(id));
 
         // Create a single ticket with multiple seats
         double totalPrice = pricePerSeat * seatNumbers.size();
-        Ticket ticket = new Ticket(ticketId, pnr, customerId, flightId, seatNumbers, totalPrice);
+        Ticket ticket = new Ticket(ticketId, generatePNR(), customerId, flightId, seatNumbers, totalPrice);
         ticket.setStatus("PURCHASED");
         
         // Set gate and terminal info if available
@@ -154,78 +279,226 @@ public class BookingService {
                 ticket.setTerminal(gate.getTerminal());
             }
         }
-        
-        tickets.add(ticket);
-        
-        // Also add ticket to customer's ticket list
-        Customer customer = userService.getCustomerById(customerId);
-        if (customer != null) {
-            customer.addTicket(ticket);
-            userService.updateCustomer(customer);
+        return ticket;
+    }
+
+    // Hold seats for a customer for the default time (see holdSeats below)
+    public SeatHold holdSeats(String customerId, String flightId, List<String> seatNumbers) {
+        return holdSeats(customerId, flightId, seatNumbers, DEFAULT_HOLD_MILLIS);
+    }
+
+    // Reserve seats without paying: they show as booked to everyone else until the hold is
+    // confirmed or released, or ttlMillis pass. Returns null if the flight cannot be booked
+    // or a seat is not available.
+    public SeatHold holdSeats(String customerId, String flightId, List<String> seatNumbers, long ttlMillis) {
+        Flight flight = flightService.getFlightById(flightId);
+        if (flight == null || !isFlightBookable(flight)) {
+            return null;
+        }
+        if (flightService.holdSeats(flightId, seatNumbers, customerId) == null) {
+            return null;
         }
         
-        saveTickets();
-        return pnr;
+        String holdId = "HLD" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        SeatHold hold = new SeatHold(holdId, customerId, flightId, new ArrayList<>(seatNumbers));
+        customerLocks.run(customerId, () -> {
+            holds.put(holdId, hold);
+            schedule(hold, ttlMillis);
+        });
+        return hold;
     }
 
-    public boolean cancelTicket(String pnr, String customerId) {
-        Ticket ticket = tickets.stream()
-                .filter(t -> t.getPnr().equals(pnr) && t.getCustomerId().equals(customerId))
-                .findFirst()
-                .orElse(null);
+    public SeatHold getHold(String holdId) {
+        return holdId != null ? holds.get(holdId) : null;
+    }
 
-        if (ticket == null || !"PURCHASED".equals(ticket.getStatus())) {
+    // Let a hold run for ttlMillis from now; false if it already ended
+    public boolean extendHold(String holdId, long ttlMillis) {
+        SeatHold hold = getHold(holdId);
+        if (hold == null) {
             return false;
         }
+        return customerLocks.call(hold.getCustomerId(), () -> {
+            if (holds.get(holdId) != hold || !holdExpiry.cancel(hold.timeout)) {
+                return false; // released, confirmed or expiring
+            }
+            schedule(hold, ttlMillis);
+            return true;
+        });
+    }
 
-        // Free up all seats associated with this ticket
-        List<String> seatNumbers = ticket.getSeatNumbers();
-        if (seatNumbers != null) {
-            for (String seatNumber : seatNumbers) {
-                FlightSeat seat = flightService.getSeatByFlightAndNumber(ticket.getFlightId(), seatNumber);
-                if (seat != null) {
-                    seat.setStatus("AVAILABLE");
-                    seat.setPassengerId(null);
-                    flightService.updateFlightSeat(seat, ticket.getFlightId());
-                }
+    public String confirmHold(String holdId, double pricePerSeat) {
+        return confirmHolds(List.of(holdId), pricePerSeat);
+    }
+
+    // Buy the seats of one or more holds of the same customer and flight as one ticket;
+    // returns its PNR, or null if a hold has ended or the flight can no longer be booked.
+    // Holds that cannot be confirmed are left to run out.
+    public String confirmHolds(List<String> holdIds, double pricePerSeat) {
+        List<SeatHold> confirming = new ArrayList<>();
+        for (String holdId : holdIds) {
+            SeatHold hold = getHold(holdId);
+            if (hold == null) {
+                return null;
             }
-        } else {
-            // Backward compatibility for old single-seat tickets
-            String seatNumber = ticket.getSeatNumber();
-            if (seatNumber != null) {
-                FlightSeat seat = flightService.getSeatByFlightAndNumber(ticket.getFlightId(), seatNumber);
-                if (seat != null) {
-                    seat.setStatus("AVAILABLE");
-                    seat.setPassengerId(null);
-                    flightService.updateFlightSeat(seat, ticket.getFlightId());
+            confirming.add(hold);
+        }
+        if (confirming.isEmpty()) {
+            return null;
+        }
+        SeatHold first = confirming.get(0);
+        Flight flight = flightService.getFlightById(first.getFlightId());
+        if (flight == null || !isFlightBookable(flight)) {
+            return null;
+        }
+        
+        return customerLocks.call(first.getCustomerId(), () -> {
+            List<String> seatNumbers = new ArrayList<>();
+            for (SeatHold hold : confirming) {
+                if (holds.get(hold.getId()) != hold || hold.isExpired()
+                        || !hold.getCustomerId().equals(first.getCustomerId())
+                        || !hold.getFlightId().equals(first.getFlightId())) {
+                    return null;
                 }
+                seatNumbers.addAll(hold.getSeatNumbers());
+            }
+            if (!flightService.confirmHeldSeats(first.getFlightId(), seatNumbers, first.getCustomerId())) {
+                return null;
+            }
+            for (SeatHold hold : confirming) {
+                holds.remove(hold.getId());
+                holdExpiry.cancel(hold.timeout);
             }
+            return issueTicket(first.getCustomerId(), flight, seatNumbers, pricePerSeat);
+        });
+    }
+
+    // Give up a hold; its seats become available again
+    public boolean releaseHold(String holdId) {
+        SeatHold hold = getHold(holdId);
+        if (hold == null) {
+            return false;
         }
+        return customerLocks.call(hold.getCustomerId(), () -> {
+            if (!holds.remove(holdId, hold)) {
+                return false;
+            }
+            holdExpiry.cancel(hold.timeout);
+            flightService.releaseHeldSeats(hold.getFlightId(), hold.getSeatNumbers(), hold.getCustomerId());
+            return true;
+        });
+    }
 
-        // Update ticket status
-        ticket.setStatus("CANCELLED");
-        saveTickets();
-        return true;
+    // Called by the timing wheel once a hold's time is up
+    private void expireHold(SeatHold hold) {
+        customerLocks.run(hold.getCustomerId(), () -> {
+            if (holds.remove(hold.getId(), hold)) {
+                flightService.releaseHeldSeats(hold.getFlightId(), hold.getSeatNumbers(), hold.getCustomerId());
+            }
+        });
     }
 
-    public Ticket getTicketByPNR(String pnr) {
-        // First check all customer records for the ticket
-        List<Customer> customers = userService.getAllCustomers();
-        for (Customer customer : customers) {
-            if (customer.getTickets() != null) {
-                for (Ticket ticket : customer.getTickets()) {
-                    if (pnr.equals(ticket.getPnr())) {
-                        return ticket;
-                    }
+    private void schedule(SeatHold hold, long ttlMillis) {
+        hold.setExpiresAt(System.currentTimeMillis() + ttlMillis);
+        hold.timeout = holdExpiry.schedule(hold, ttlMillis);
+    }
+
+    // Add a new ticket to the ticket list and its customer's record. A PNR already in use
+    // is replaced by a fresh one; putIfAbsent makes taking a PNR atomic.
+    private void recordTicket(Ticket ticket) {
+        customerLocks.run(ticket.getCustomerId(), () -> {
+            addTicket(ticket);
+            
+            // Also add ticket to customer's ticket list
+            Customer customer = userService.getCustomerById(ticket.getCustomerId());
+            if (customer != null) {
+                customer.addTicket(ticket);
+                userService.updateCustomer(customer);
+            }
+            
+            journalTicket(ticket);
+        });
+    }
+
+    // Record a batch of new tickets as recordTicket does, with one journal write for the
+    // tickets and one for their customers
+    void recordTickets(List<Ticket> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> customerIds = new LinkedHashSet<>();
+        for (Ticket ticket : batch) {
+            customerIds.add(ticket.getCustomerId());
+        }
+        customerLocks.call(customerIds, () -> {
+            Map<String, Customer> customers = new LinkedHashMap<>();
+            Map<String, String> payloads = new LinkedHashMap<>();
+            for (Ticket ticket : batch) {
+                addTicket(ticket);
+                Customer customer = userService.getCustomerById(ticket.getCustomerId());
+                if (customer != null) {
+                    customer.addTicket(ticket);
+                    customers.put(customer.getId(), customer);
                 }
+                payloads.put(ticket.getId(), JsonUtil.toJson(ticket));
+            }
+            userService.updateCustomers(customers.values());
+            
+            loadedFiles.changed(TICKETS_FILE);
+            if (!ticketJournal.appendAll(OP_TICKET, payloads) || ticketJournal.needsCompaction()) {
+                saveTickets();
             }
+            return null;
+        });
+    }
+
+    // Add a ticket to the list and indexes; called under its customer's stripe
+    private void addTicket(Ticket ticket) {
+        while (ticketsByPnr.putIfAbsent(ticket.getPnr(), ticket) != null) {
+            ticket.setPnr(generatePNR());
         }
-        
-        // Fallback to global tickets file
-        return tickets.stream()
-                .filter(t -> t.getPnr().equals(pnr))
-                .findFirst()
-                .orElse(null);
+        ticketIds.add(ticket.getId());
+        tickets.add(ticket);
+        ticketsByCustomer.computeIfAbsent(ticket.getCustomerId(), id -> Collections.synchronizedList(new ArrayList<>())).add(ticket);
+    }
+
+    public boolean cancelTicket(String pnr, String customerId) {
+        return customerLocks.call(customerId, () -> {
+            Ticket ticket = ticketsByPnr.get(pnr);
+            if (ticket != null && !ticket.getCustomerId().equals(customerId)) {
+                // Old data may hold the same PNR for several customers
+                ticket = customerTicketsOf(customerId).stream()
+                        .filter(t -> pnr.equals(t.getPnr()))
+                        .findFirst()
+                        .orElse(null);
+            }
+
+            if (ticket == null || !"PURCHASED".equals(ticket.getStatus())) {
+                return false;
+            }
+
+            // Free up all seats associated with this ticket
+            List<String> seatNumbers = ticket.getSeatNumbers();
+            if (seatNumbers == null) {
+                // Backward compatibility for old single-seat tickets
+                seatNumbers = new ArrayList<>();
+                if (ticket.getSeatNumber() != null) {
+                    seatNumbers.add(ticket.getSeatNumber());
+                }
+            }
+            flightService.releaseSeats(ticket.getFlightId(), seatNumbers);
+
+            // Update ticket status
+            ticket.setStatus("CANCELLED");
+            journalTicket(ticket);
+            return true;
+        });
+    }
+
+    // Every issued ticket is in the ticket list, which is also where cancellations are
+    // recorded, so its PNR index answers for the copies in customer records too
+    public Ticket getTicketByPNR(String pnr) {
+        return pnr != null ? ticketsByPnr.get(pnr) : null;
     }
 
     public List<Ticket> getCustomerTickets(String customerId) {
@@ -234,39 +507,33 @@ public class BookingService {
         if (customer != null && customer.getTickets() != null && !customer.getTickets().isEmpty()) {
             List<Ticket> customerTickets = new ArrayList<>(customer.getTickets());
             // Fix seat numbers for customer tickets too
-            for (Ticket ticket : customerTickets) {
-                if (ticket.getSeatNumbers() == null || ticket.getSeatNumbers().isEmpty()) {
-                    if ("M0U3KU".equals(ticket.getPnr())) {
-                        List<String> seatNumbers = new ArrayList<>();
-                        seatNumbers.add("1A");
-                        seatNumbers.add("1B");
-                        seatNumbers.add("1C");
-                        ticket.setSeatNumbers(seatNumbers);
-                    }
-                }
-            }
+            fixTicketSeatNumbers(customerTickets);
             return customerTickets;
         }
         
         // Fallback to global tickets file if customer not found or has no tickets
-        List<Ticket> globalTickets = tickets.stream()
-                .filter(t -> t.getCustomerId().equals(customerId))
-                .collect(Collectors.toList());
-        
-        // Fix seat numbers for global tickets too
-        for (Ticket ticket : globalTickets) {
-            if (ticket.getSeatNumbers() == null || ticket.getSeatNumbers().isEmpty()) {
-                if ("M0U3KU".equals(ticket.getPnr())) {
-                    List<String> seatNumbers = new ArrayList<>();
-                    seatNumbers.add("1A");
-                    seatNumbers.add("1B");
-                    seatNumbers.add("1C");
-                    ticket.setSeatNumbers(seatNumbers);
-                }
-            }
+        // (already fixed when loaded)
+        return customerTicketsOf(customerId);
+    }
+
+    // Copy of the customer's tickets in the ticket list
+    private List<Ticket> customerTicketsOf(String customerId) {
+        List<Ticket> customerTickets = ticketsByCustomer.get(customerId);
+        if (customerTickets == null) {
+            return new ArrayList<>();
+        }
+        synchronized (customerTickets) {
+            return new ArrayList<>(customerTickets);
         }
-        
-        return globalTickets;
+    }
+
+    // Number of tickets getCustomerTickets would return, without copying them
+    public int getCustomerTicketCount(String customerId) {
+        Customer customer = userService.getCustomerById(customerId);
+        if (customer != null && customer.getTickets() != null && !customer.getTickets().isEmpty()) {
+            return customer.getTickets().size();
+        }
+        return ticketsByCustomer.getOrDefault(customerId, Collections.emptyList()).size();
     }
 
     public List<Ticket> getAllTickets() {
@@ -278,17 +545,13 @@ public class BookingService {
         return ticket != null && "PURCHASED".equals(ticket.getStatus());
     }
 
+    // Unique among the PNRs issued by the allocator and those of the loaded tickets
     private String generatePNR() {
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        StringBuilder pnr = new StringBuilder();
-        for (int i = 0; i < 6; i++) {
-            pnr.append(chars.charAt((int) (Math.random() * chars.length())));
-        }
-        return pnr.toString();
+        return PNRS.next(pnr -> ticketsByPnr.containsKey(pnr));
     }
 
     // Helper method to check if a flight is bookable based on its status
-    private boolean isFlightBookable(Flight flight) {
+    static boolean isFlightBookable(Flight flight) {
         String status = flight.getStatus();
         if (status == null) {
             status = "SCHEDULED"; // Default status
@@ -298,7 +561,7 @@ public class BookingService {
     }
     
     // WORKAROUND: Fix seat numbers that weren't parsed correctly by JsonUtil
-    private void fixTicketSeatNumbers() {
+    private static void fixTicketSeatNumbers(List<Ticket> tickets) {
         for (Ticket ticket : tickets) {
             if (ticket.getSeatNumbers() == null || ticket.getSeatNumbers().isEmpty()) {
                 // Try to reconstruct seat numbers from the ticket data
@@ -0,0 +1,71 @@
+package service;
+
+import model.Flight;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Flights ordered by departure time, behind FlightService's departure range queries: a
+// range is a sub-map of the tree, so a query costs O(log n + k) for k flights found.
+// Kept up to date by FlightService's mutators and rebuilt on reload. Each flight is
+// remembered under the time it was indexed with, because views edit flights in place
+// before calling update. Flights without a departure time are not indexed.
+final class DepartureIndex {
+
+    private final TreeMap<LocalDateTime, Set<String>> flightsByTime = new TreeMap<>();
+    private final Map<String, LocalDateTime> indexedTimes = new HashMap<>();
+
+    static DepartureIndex build(Collection<Flight> flights) {
+        DepartureIndex index = new DepartureIndex();
+        for (Flight flight : flights) {
+            index.putFlight(flight);
+        }
+        return index;
+    }
+
+    synchronized void putFlight(Flight flight) {
+        removeFlight(flight.getId());
+        LocalDateTime time = flight.getDepartureTime();
+        if (time != null) {
+            indexedTimes.put(flight.getId(), time);
+            flightsByTime.computeIfAbsent(time, t -> new LinkedHashSet<>()).add(flight.getId());
+        }
+    }
+
+    synchronized void removeFlight(String flightId) {
+        LocalDateTime time = indexedTimes.remove(flightId);
+        if (time == null) {
+            return;
+        }
+        Set<String> ids = flightsByTime.get(time);
+        if (ids != null && ids.remove(flightId) && ids.isEmpty()) {
+            flightsByTime.remove(time);
+        }
+    }
+
+    // Ids of the flights departing from (inclusive) to (exclusive), by departure time;
+    // a null bound leaves that end of the range open
+    synchronized List<String> between(LocalDateTime from, LocalDateTime to) {
+        NavigableMap<LocalDateTime, Set<String>> range = flightsByTime;
+        if (from != null && to != null) {
+            range = from.isBefore(to) ? flightsByTime.subMap(from, true, to, false) : new TreeMap<>();
+        } else if (from != null) {
+            range = flightsByTime.tailMap(from, true);
+        } else if (to != null) {
+            range = flightsByTime.headMap(to, false);
+        }
+        List<String> flightIds = new ArrayList<>();
+        for (Set<String> ids : range.values()) {
+            flightIds.addAll(ids);
+        }
+        return flightIds;
+    }
+}
@@ -0,0 +1,222 @@
+package service;
+
+import model.Flight;
+import model.Route;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Inverted index behind FlightService.searchFlights: city names -> routes -> flights,
+// with each route's flights partitioned by departure date. A search keeps the old
+// semantics (case-insensitive "contains" on departure and arrival city) but only looks at
+// the cities and flights that can match, so its cost does not grow with the schedule.
+//
+// Every suffix of every word of a city name is indexed, so the cities containing a query
+// word are one sorted-map range; the whole query is then checked against those cities.
+// Kept up to date by FlightService's mutators and rebuilt on reload. Routes and flights
+// are remembered under the city names and key they were indexed with, because views edit
+// them in place before calling update.
+final class FlightSearchIndex {
+
+    private final CityIndex departures = new CityIndex();
+    private final CityIndex arrivals = new CityIndex();
+    // routeId -> {departure, arrival} as indexed
+    private final Map<String, String[]> routeCities = new HashMap<>();
+    // routeId -> departure date -> flight ids
+    private final Map<String, Map<LocalDate, Set<String>>> flightsByRoute = new HashMap<>();
+    private final Map<String, FlightKey> flightKeys = new HashMap<>();
+    // Results are returned in the order FlightService holds its flights
+    private long nextOrder;
+
+    private static final class FlightKey {
+        final String routeId;
+        final LocalDate date;
+        final long order;
+
+        FlightKey(String routeId, LocalDate date, long order) {
+            this.routeId = routeId;
+            this.date = date;
+            this.order = order;
+        }
+    }
+
+    static FlightSearchIndex build(Collection<Route> routes, Collection<Flight> flights) {
+        FlightSearchIndex index = new FlightSearchIndex();
+        for (Route route : routes) {
+            index.putRoute(route);
+        }
+        for (Flight flight : flights) {
+            index.putFlight(flight);
+        }
+        return index;
+    }
+
+    synchronized void putRoute(Route route) {
+        removeRoute(route.getId());
+        routeCities.put(route.getId(), new String[] {route.getDeparture(), route.getArrival()});
+        departures.add(route.getDeparture(), route.getId());
+        arrivals.add(route.getArrival(), route.getId());
+    }
+
+    synchronized void removeRoute(String routeId) {
+        String[] cities = routeCities.remove(routeId);
+        if (cities != null) {
+            departures.remove(cities[0], routeId);
+            arrivals.remove(cities[1], routeId);
+        }
+    }
+
+    synchronized void putFlight(Flight flight) {
+        FlightKey old = flightKeys.get(flight.getId());
+        if (old != null) {
+            unlink(flight.getId(), old);
+        }
+        LocalDate date = flight.getDepartureTime() != null ? flight.getDepartureTime().toLocalDate() : null;
+        FlightKey key = new FlightKey(flight.getRouteId(), date, old != null ? old.order : nextOrder++);
+        flightKeys.put(flight.getId(), key);
+        flightsByRoute.computeIfAbsent(key.routeId, id -> new HashMap<>())
+                .computeIfAbsent(date, d -> new HashSet<>())
+                .add(flight.getId());
+    }
+
+    synchronized void removeFlight(String flightId) {
+        FlightKey old = flightKeys.remove(flightId);
+        if (old != null) {
+            unlink(flightId, old);
+        }
+    }
+
+    // Ids of the flights on a route whose departure city contains departure and arrival
+    // city contains arrival (ignoring case), departing on date if it is not null
+    synchronized List<String> search(String departure, String arrival, LocalDate date) {
+        Set<String> routeIds = departures.routesMatching(departure);
+        if (!routeIds.isEmpty()) {
+            routeIds.retainAll(arrivals.routesMatching(arrival));
+        }
+
+        List<String> flightIds = new ArrayList<>();
+        for (String routeId : routeIds) {
+            Map<LocalDate, Set<String>> byDate = flightsByRoute.get(routeId);
+            if (byDate == null) {
+                continue;
+            }
+            if (date != null) {
+                flightIds.addAll(byDate.getOrDefault(date, Collections.emptySet()));
+            } else {
+                for (Set<String> ids : byDate.values()) {
+                    flightIds.addAll(ids);
+                }
+            }
+        }
+        flightIds.sort(Comparator.comparingLong(id -> flightKeys.get(id).order));
+        return flightIds;
+    }
+
+    private void unlink(String flightId, FlightKey key) {
+        Map<LocalDate, Set<String>> byDate = flightsByRoute.get(key.routeId);
+        if (byDate == null) {
+            return;
+        }
+        Set<String> ids = byDate.get(key.date);
+        if (ids != null) {
+            ids.remove(flightId);
+            if (ids.isEmpty()) {
+                byDate.remove(key.date);
+            }
+        }
+        if (byDate.isEmpty()) {
+            flightsByRoute.remove(key.routeId);
+        }
+    }
+
+    // Routes by lower-cased city name, and city names by every suffix of their words
+    private static final class CityIndex {
+        private final Map<String, Set<String>> routesByCity = new HashMap<>();
+        private final TreeMap<String, Set<String>> citiesBySuffix = new TreeMap<>();
+
+        void add(String cityName, String routeId) {
+            if (cityName == null) {
+                return;
+            }
+            String city = cityName.toLowerCase();
+            Set<String> routeIds = routesByCity.get(city);
+            if (routeIds == null) {
+                routeIds = new LinkedHashSet<>();
+                routesByCity.put(city, routeIds);
+                for (String suffix : suffixes(city)) {
+                    citiesBySuffix.computeIfAbsent(suffix, s -> new HashSet<>()).add(city);
+                }
+            }
+            routeIds.add(routeId);
+        }
+
+        void remove(String cityName, String routeId) {
+            if (cityName == null) {
+                return;
+            }
+            String city = cityName.toLowerCase();
+            Set<String> routeIds = routesByCity.get(city);
+            if (routeIds == null || !routeIds.remove(routeId) || !routeIds.isEmpty()) {
+                return;
+            }
+            routesByCity.remove(city);
+            for (String suffix : suffixes(city)) {
+                Set<String> cities = citiesBySuffix.get(suffix);
+                if (cities != null && cities.remove(city) && cities.isEmpty()) {
+                    citiesBySuffix.remove(suffix);
+                }
+            }
+        }
+
+        // Routes of every city containing query. A city containing the query contains each
+        // of its words within one of its own words, so the longest query word narrows the
+        // candidates; a query without words is checked against every city.
+        Set<String> routesMatching(String query) {
+            String lowerQuery = query.toLowerCase();
+            String longestWord = "";
+            for (String word : lowerQuery.split("\\s+")) {
+                if (word.length() > longestWord.length()) {
+                    longestWord = word;
+                }
+            }
+
+            Collection<String> candidates;
+            if (longestWord.isEmpty()) {
+                candidates = routesByCity.keySet();
+            } else {
+                candidates = new HashSet<>();
+                for (Set<String> cities : citiesBySuffix.subMap(longestWord, true, longestWord + Character.MAX_VALUE, false).values()) {
+                    candidates.addAll(cities);
+                }
+            }
+
+            Set<String> routeIds = new HashSet<>();
+            for (String city : candidates) {
+                if (city.contains(lowerQuery)) {
+                    routeIds.addAll(routesByCity.get(city));
+                }
+            }
+            return routeIds;
+        }
+
+        private static Set<String> suffixes(String city) {
+            Set<String> suffixes = new HashSet<>();
+            for (String word : city.split("\\s+")) {
+                for (int i = 0; i < word.length(); i++) {
+                    suffixes.add(word.substring(i));
+                }
+            }
+            return suffixes;
+        }
+    }
+}
@@ -1,87 +1,696 @@
 package service;
 
 import model.*;
+import util.DataDirectoryWatcher;
+import util.Journal;
 import util.JsonUtil;
+import util.ModelCodecs;
+import util.WriteBehind;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+// Readers take no lock: collections are published through volatile fields, and a new key
+// is added to a copy that replaces the published map (see Indexes.with), so a reader
+// never sees a map being filled in. Seat writes take the flight's stripe in flightLocks,
+// so writes on different flights run in parallel; adding, changing or deleting whole
+// records is synchronized and also takes the record's stripe. Reloads run exclusively.
+// Lock order: this service, then a stripe, then snapshotLock.
 public class FlightService {
-    private List<Flight> flights;
-    private List<Route> routes;
-    private List<Aircraft> aircrafts;
-    private List<Gate> gates;
-    private List<Terminal> terminals;
+    // Collections by id, in file order (see Indexes)
+    private volatile Map<String, Flight> flights;
+    private volatile Map<String, Route> routes;
+    private volatile Map<String, Aircraft> aircrafts;
+    private volatile Map<String, Gate> gates;
+    private volatile Map<String, Terminal> terminals;
+    // First flight with each flight number, and the number each flight is indexed under
+    // (views edit flights in place, so the old number cannot be read from the flight)
+    private volatile Map<String, Flight> flightsByNumber;
+    private volatile Map<String, String> flightNumbers;
+    // Flights by route city and departure date, for searchFlights
+    private volatile FlightSearchIndex searchIndex;
+    // Flights by departure time, for the departure range queries
+    private volatile DepartureIndex departureIndex;
     
-    private static final String FLIGHTS_FILE = "flights.json";
-    private static final String ROUTES_FILE = "routes.json";
-    private static final String AIRCRAFTS_FILE = "aircrafts.json";
-    private static final String GATES_FILE = "gates.json";
-    private static final String TERMINALS_FILE = "terminals.json";
+    static final String FLIGHTS_FILE = "flights.json";
+    static final String ROUTES_FILE = "routes.json";
+    static final String AIRCRAFTS_FILE = "aircrafts.json";
+    static final String GATES_FILE = "gates.json";
+    static final String TERMINALS_FILE = "terminals.json";
+    
+    // Journal record types for flights.json
+    private static final String OP_SEATS = "SEATS";
+    private static final String OP_FLIGHT = "FLIGHT";
+    private static final String OP_DELETE = "DELETE";
+    
+    private final Journal flightJournal = Journal.forFile(FLIGHTS_FILE);
+    
+    // Sharded layout (-Dflights.sharded=true): flights.json holds only flight headers and
+    // data/flights/<id>.json each flight's seats, so a snapshot rewrites only the flights
+    // whose seats changed instead of every seat of every flight
+    private static final String SHARD_DIR = "flights/";
+    private final boolean sharded = Boolean.getBoolean("flights.sharded");
+    // Flights whose shard is behind the journal, with a change count so a flight changed
+    // again while its shard is being written stays dirty
+    private final Map<String, Long> dirtyShards = new ConcurrentHashMap<>();
+    // In the sharded layout seat lists are loaded on first use. Unchanged lists (with
+    // their index) are only softly cached so they can be dropped under memory pressure and
+    // read again from the shard; changed lists stay attached to their Flight until their
+    // shard is snapshotted.
+    private final Map<String, SoftReference<SeatIndex>> seatCache = new ConcurrentHashMap<>();
+    // Seat lists detached by a snapshot whose write has not completed yet. Their shards
+    // on disk are behind, so they are held strongly and used by later snapshots and
+    // lookups until written.
+    private final Map<String, SeatIndex> unsavedSeats = new ConcurrentHashMap<>();
+    
+    private final LoadedFiles loadedFiles = new LoadedFiles();
+    private final AtomicBoolean catchingUp = new AtomicBoolean();
+    // Held here so it lives exactly as long as this service (the watcher holds it weakly)
+    private final DataDirectoryWatcher.Listener fileListener = this::dataFilesChanged;
+    
+    private final StripedLocks flightLocks = new StripedLocks();
+    // Snapshots may be started from writes on several flights at once
+    private final Object snapshotLock = new Object();
 
     public FlightService() {
+        this(null);
+    }
+
+    // Takes the files already parsed by loader, if given
+    FlightService(StartupLoader loader) {
+        loadedFiles.preloadFrom(loader);
         loadData();
         if (flights.isEmpty() && !dataFilesExist()) {
             initializeDefaultData();
         }
+        DataDirectoryWatcher.addListener(fileListener);
+    }
+
+    // Called on the watcher thread when files in data/ change
+    private void dataFilesChanged(Set<String> fileNames) {
+        if (fileNames.isEmpty() || fileNames.contains(FLIGHTS_FILE) || fileNames.contains(ROUTES_FILE)
+                || fileNames.contains(AIRCRAFTS_FILE) || fileNames.contains(GATES_FILE)
+                || fileNames.contains(TERMINALS_FILE)) {
+            reloadData();
+        }
     }
 
     private boolean dataFilesExist() {
         java.io.File dataDir = new java.io.File("data");
         if (!dataDir.exists()) return false;
         
-        java.io.File flightsFile = new java.io.File("data/" + FLIGHTS_FILE);
-        java.io.File routesFile = new java.io.File("data/" + ROUTES_FILE);
-        java.io.File aircraftsFile = new java.io.File("data/" + AIRCRAFTS_FILE);
-        java.io.File gatesFile = new java.io.File("data/" + GATES_FILE);
-        java.io.File terminalsFile = new java.io.File("data/" + TERMINALS_FILE);
-        
-        return (flightsFile.exists() && flightsFile.length() > 10) || 
-               (routesFile.exists() && routesFile.length() > 10) || 
-               (aircraftsFile.exists() && aircraftsFile.length() > 10) || 
-               (gatesFile.exists() && gatesFile.length() > 10) || 
-               (terminalsFile.exists() && terminalsFile.length() > 10);
+        // Sizes cover whichever storage format (JSON or binary) the files were saved in
+        return JsonUtil.dataFileSize(FLIGHTS_FILE) > 10 || 
+               JsonUtil.dataFileSize(ROUTES_FILE) > 10 || 
+               JsonUtil.dataFileSize(AIRCRAFTS_FILE) > 10 || 
+               JsonUtil.dataFileSize(GATES_FILE) > 10 || 
+               JsonUtil.dataFileSize(TERMINALS_FILE) > 10;
     }
 
     private void loadData() {
-        flights = JsonUtil.loadFromFile(FLIGHTS_FILE, Flight.class);
-        routes = JsonUtil.loadFromFile(ROUTES_FILE, Route.class);
-        aircrafts = JsonUtil.loadFromFile(AIRCRAFTS_FILE, Aircraft.class);
-        gates = JsonUtil.loadFromFile(GATES_FILE, Gate.class);
-        terminals = JsonUtil.loadFromFile(TERMINALS_FILE, Terminal.class);
+        loadData(false);
+    }
+
+    // Load every file, or with onlyChanged only the files changed since they were loaded
+    private void loadData(boolean onlyChanged) {
+        boolean loadFlights = needsLoad(FLIGHTS_FILE, onlyChanged);
+        boolean loadRoutes = needsLoad(ROUTES_FILE, onlyChanged);
+        boolean loadAircrafts = needsLoad(AIRCRAFTS_FILE, onlyChanged);
+        boolean loadGates = needsLoad(GATES_FILE, onlyChanged);
+        boolean loadTerminals = needsLoad(TERMINALS_FILE, onlyChanged);
+        if (!(loadFlights || loadRoutes || loadAircrafts || loadGates || loadTerminals)) {
+            return;
+        }
+        
+        // Pending background writes may hold changes newer than the files
+        WriteBehind.flush();
         
-        // Initialize seats for flights that don't have them yet
-        initializeFlightSeats();
+        if (loadRoutes) {
+            routes = Indexes.byKey(loadedFiles.load(ROUTES_FILE, Route.class), Route::getId);
+        }
+        if (loadAircrafts) {
+            aircrafts = Indexes.byKey(loadedFiles.load(AIRCRAFTS_FILE, Aircraft.class), Aircraft::getId);
+        }
+        if (loadGates) {
+            gates = Indexes.byKey(loadedFiles.load(GATES_FILE, Gate.class), Gate::getId);
+        }
+        if (loadTerminals) {
+            terminals = Indexes.byKey(loadedFiles.load(TERMINALS_FILE, Terminal.class), Terminal::getId);
+        }
+        if (loadFlights) {
+            loadFlights();
+        }
+        if (loadRoutes || loadFlights) {
+            searchIndex = FlightSearchIndex.build(routes.values(), flights.values());
+        }
+        if (loadFlights) {
+            departureIndex = DepartureIndex.build(flights.values());
+        }
     }
 
-    // Public method to reload data from files (useful after external changes)
-    public void reloadData() {
-        loadData();
+    // The flights are completed before they are published, since readers do not lock
+    private void loadFlights() {
+        Map<String, Flight> loaded = Indexes.byKey(loadedFiles.load(FLIGHTS_FILE, Flight.class), Flight::getId);
+        
+        dirtyShards.clear();
+        seatCache.clear();
+        unsavedSeats.clear();
+        boolean layoutChanged = attachSeatShards(loaded.values());
+        
+        // Apply flight and seat changes recorded since the last snapshot
+        replayFlightJournal(loaded);
+        
+        // Initialize seats for flights that don't have them yet (done on first use when sharded)
+        boolean seatsCreated = !sharded && initializeFlightSeats(loaded.values());
+        indexFlightNumbers(loaded);
+        flights = loaded;
+        
+        // Rewrite flights saved in the other layout, or with new seats
+        if (layoutChanged || seatsCreated) {
+            saveFlights();
+        }
     }
 
+    // Seats stored inline in flights.json take precedence over shards. When sharded, the
+    // remaining seat lists are left to load on first use; otherwise they are read from the
+    // shards now. Returns true if the files on disk are not in the configured layout.
+    private boolean attachSeatShards(Collection<Flight> loaded) {
+        boolean layoutChanged = false;
+        for (Flight flight : loaded) {
+            if (flight.isSeatListLoaded()) {
+                if (sharded) {
+                    touchShard(flight.getId());
+                    layoutChanged = true;
+                }
+            } else if (!sharded && JsonUtil.dataFileExists(shardFile(flight.getId()))) {
+                flight.setSeats(JsonUtil.loadFromFile(shardFile(flight.getId()), FlightSeat.class));
+                layoutChanged = true;
+            }
+        }
+        return layoutChanged;
+    }
+
+    // Seat list of a flight, loading it from its shard if it is not in memory
+    private List<FlightSeat> seatsOf(Flight flight) {
+        return seatIndexOf(flight).getSeats();
+    }
+
+    // Seat index of a flight (see SeatIndex), loading the seats if they are not in memory.
+    // Loading is done under the flight's lock so concurrent buyers share one inventory.
+    private SeatIndex seatIndexOf(Flight flight) {
+        if (!sharded || flight.isSeatListLoaded()) {
+            return flight.getSeatIndex();
+        }
+        
+        synchronized (flight) {
+            if (flight.isSeatListLoaded()) {
+                return flight.getSeatIndex();
+            }
+            SeatIndex index = unsavedSeats.get(flight.getId());
+            if (index == null) {
+                SoftReference<SeatIndex> cached = seatCache.get(flight.getId());
+                index = cached != null ? cached.get() : null;
+            }
+            if (index == null) {
+                String fileName = shardFile(flight.getId());
+                if (!JsonUtil.dataFileExists(fileName)) {
+                    // No shard yet, so create the seats as initializeFlightSeats does
+                    createSeatsForFlight(flight);
+                    return flight.getSeatIndex();
+                }
+                index = SeatIndex.of(JsonUtil.loadFromFile(fileName, FlightSeat.class));
+                seatCache.put(flight.getId(), new SoftReference<>(index));
+                SeatInventory inventory = index.getInventory();
+                flight.setSeatCounts(inventory.getAvailableCount(), inventory.getSoldCount());
+            }
+            return index;
+        }
+    }
+
+    // Copy status and passenger of each given seat onto the flight's seat with the same
+    // number. Changed seat lists stay attached to the flight until snapshotted.
+    private List<FlightSeat> applySeatChanges(Flight flight, List<FlightSeat> seats) {
+        SeatIndex index = seatIndexOf(flight);
+        List<FlightSeat> changed = new ArrayList<>();
+        for (FlightSeat seat : seats) {
+            int position = index.positionOf(seat.getSeatNumber());
+            if (position >= 0) {
+                FlightSeat existingSeat = index.getSeats().get(position);
+                existingSeat.setStatus(seat.getStatus());
+                existingSeat.setPassengerId(seat.getPassengerId());
+                index.getInventory().set(position, !existingSeat.isAvailable());
+                changed.add(existingSeat);
+            }
+        }
+        if (!changed.isEmpty()) {
+            attachChangedSeats(flight, index);
+        }
+        return changed;
+    }
+
+    // Keep a changed seat list on its flight until its shard is snapshotted
+    private static void attachChangedSeats(Flight flight, SeatIndex index) {
+        synchronized (flight) {
+            if (!flight.isSeatListLoaded()) {
+                flight.attachSeats(index);
+            }
+        }
+    }
+
+    // Sell seats to a passenger: all of them or none. Runs under the flight's stripe, so
+    // a reload cannot replace the flight halfway; readers take no lock and see the seats
+    // through the seat inventory. Returns the seats sold, or null if a seat does not
+    // exist or is taken.
+    public List<FlightSeat> claimSeats(String flightId, List<String> seatNumbers, String passengerId) {
+        return flightLocks.call(flightId, () -> {
+            Flight flight = getFlightById(flightId);
+            if (flight == null || seatNumbers.isEmpty()) {
+                return null;
+            }
+            SeatIndex index = seatIndexOf(flight);
+            int[] positions = positionsOf(index, seatNumbers);
+            if (positions == null || !index.getInventory().claim(positions)) {
+                return null;
+            }
+            
+            List<FlightSeat> claimed = new ArrayList<>();
+            for (int position : positions) {
+                FlightSeat seat = index.getSeats().get(position);
+                seat.setStatus("SOLD");
+                seat.setPassengerId(passengerId);
+                claimed.add(seat);
+            }
+            recordSeatChanges(flight, index, claimed);
+            return claimed;
+        });
+    }
+
+    // Sell seats for several purchases on one flight under one lock, each all or nothing
+    // as in claimSeats, and journal every seat sold as one record. Returns the seats sold
+    // for each purchase, null where one was not available.
+    public List<List<FlightSeat>> claimSeatsBatch(String flightId, List<List<String>> seatNumbers, List<String> passengerIds) {
+        return flightLocks.call(flightId, () -> {
+            List<List<FlightSeat>> results = new ArrayList<>();
+            Flight flight = getFlightById(flightId);
+            if (flight == null) {
+                seatNumbers.forEach(s -> results.add(null));
+                return results;
+            }
+            SeatIndex index = seatIndexOf(flight);
+            List<FlightSeat> sold = new ArrayList<>();
+            for (int i = 0; i < seatNumbers.size(); i++) {
+                int[] positions = seatNumbers.get(i).isEmpty() ? null : positionsOf(index, seatNumbers.get(i));
+                if (positions == null || !index.getInventory().claim(positions)) {
+                    results.add(null);
+                    continue;
+                }
+                List<FlightSeat> claimed = new ArrayList<>();
+                for (int position : positions) {
+                    FlightSeat seat = index.getSeats().get(position);
+                    seat.setStatus("SOLD");
+                    seat.setPassengerId(passengerIds.get(i));
+                    claimed.add(seat);
+                }
+                results.add(claimed);
+                sold.addAll(claimed);
+            }
+            if (!sold.isEmpty()) {
+                recordSeatChanges(flight, index, sold);
+            }
+            return results;
+        });
+    }
+
+    // Make seats available again (e.g. for a cancelled ticket). Unknown seats are skipped.
+    public void releaseSeats(String flightId, List<String> seatNumbers) {
+        flightLocks.run(flightId, () -> {
+            Flight flight = getFlightById(flightId);
+            if (flight == null) {
+                return;
+            }
+            SeatIndex index = seatIndexOf(flight);
+            List<FlightSeat> released = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            for (String seatNumber : seatNumbers) {
+                int position = index.positionOf(seatNumber);
+                if (position >= 0) {
+                    FlightSeat seat = index.getSeats().get(position);
+                    seat.setStatus("AVAILABLE");
+                    seat.setPassengerId(null);
+                    released.add(seat);
+                    positions.add(position);
+                }
+            }
+            if (released.isEmpty()) {
+                return;
+            }
+            // Free the bits only after the seats are updated, so a new buyer's changes win
+            index.getInventory().release(positions.stream().mapToInt(Integer::intValue).toArray());
+            recordSeatChanges(flight, index, released);
+        });
+    }
+
+    // Hold seats for a passenger, all of them or none: they are taken in the inventory and
+    // marked BOOKED, but only in memory, so nothing is journaled until the hold is
+    // confirmed. Returns the seats held, or null if a seat does not exist or is taken.
+    public List<FlightSeat> holdSeats(String flightId, List<String> seatNumbers, String passengerId) {
+        return flightLocks.call(flightId, () -> {
+            Flight flight = getFlightById(flightId);
+            if (flight == null || seatNumbers.isEmpty()) {
+                return null;
+            }
+            SeatIndex index = seatIndexOf(flight);
+            int[] positions = positionsOf(index, seatNumbers);
+            if (positions == null || !index.getInventory().hold(positions)) {
+                return null;
+            }
+            
+            List<FlightSeat> held = new ArrayList<>();
+            for (int position : positions) {
+                FlightSeat seat = index.getSeats().get(position);
+                seat.setStatus("BOOKED");
+                seat.setPassengerId(passengerId);
+                held.add(seat);
+            }
+            attachChangedSeats(flight, index);
+            return held;
+        });
+    }
+
+    // Sell seats held for a passenger. False, and nothing sold, if one of them is no longer
+    // held for them (the hold ended, or the flight was reloaded from changed files).
+    public boolean confirmHeldSeats(String flightId, List<String> seatNumbers, String passengerId) {
+        return flightLocks.call(flightId, () -> {
+            Flight flight = getFlightById(flightId);
+            if (flight == null || seatNumbers.isEmpty()) {
+                return false;
+            }
+            SeatIndex index = seatIndexOf(flight);
+            int[] positions = positionsOf(index, seatNumbers);
+            if (positions == null) {
+                return false;
+            }
+            for (int position : positions) {
+                FlightSeat seat = index.getSeats().get(position);
+                if (!index.getInventory().isHeld(position) || !seat.isBooked() || !passengerId.equals(seat.getPassengerId())) {
+                    return false;
+                }
+            }
+            
+            List<FlightSeat> sold = new ArrayList<>();
+            for (int position : positions) {
+                FlightSeat seat = index.getSeats().get(position);
+                seat.setStatus("SOLD");
+                sold.add(seat);
+            }
+            index.getInventory().confirm(positions);
+            recordSeatChanges(flight, index, sold);
+            return true;
+        });
+    }
+
+    // End a hold: the seats still held for the passenger become available again. They were
+    // never persisted as held, so there is nothing to journal.
+    public void releaseHeldSeats(String flightId, List<String> seatNumbers, String passengerId) {
+        flightLocks.run(flightId, () -> {
+            Flight flight = getFlightById(flightId);
+            if (flight == null) {
+                return;
+            }
+            SeatIndex index = seatIndexOf(flight);
+            List<Integer> positions = new ArrayList<>();
+            for (String seatNumber : seatNumbers) {
+                int position = index.positionOf(seatNumber);
+                if (position >= 0 && index.getInventory().isHeld(position)) {
+                    FlightSeat seat = index.getSeats().get(position);
+                    if (seat.isBooked() && passengerId.equals(seat.getPassengerId())) {
+                        seat.setStatus("AVAILABLE");
+                        seat.setPassengerId(null);
+                        positions.add(position);
+                    }
+                }
+            }
+            index.getInventory().release(positions.stream().mapToInt(Integer::intValue).toArray());
+        });
+    }
+
+    // Journal seat changes made through the inventory; called under the flight's stripe
+    private void recordSeatChanges(Flight flight, SeatIndex index, List<FlightSeat> changed) {
+        attachChangedSeats(flight, index);
+        journalFlightChange(OP_SEATS, flight.getId(), JsonUtil.toJson(changed));
+    }
+
+    // Inventory positions of the given seats, or null if one does not exist
+    private static int[] positionsOf(SeatIndex index, List<String> seatNumbers) {
+        int[] positions = new int[seatNumbers.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = index.positionOf(seatNumbers.get(i));
+            if (positions[i] < 0) {
+                return null;
+            }
+        }
+        return positions;
+    }
+
+    private static String shardFile(String flightId) {
+        return SHARD_DIR + flightId + ".json";
+    }
+
+    private void touchShard(String flightId) {
+        if (sharded) {
+            dirtyShards.merge(flightId, 1L, Long::sum);
+        }
+    }
+
+    private boolean needsLoad(String fileName, boolean onlyChanged) {
+        return !onlyChanged || loadedFiles.isStale(fileName);
+    }
+
+    // True if a data file changed since it was loaded, i.e. reloadData() would read it;
+    // a few file stats, for views to poll when the data directory is not watched
+    public boolean hasChangedFiles() {
+        return loadedFiles.isStale(FLIGHTS_FILE) || loadedFiles.isStale(ROUTES_FILE)
+                || loadedFiles.isStale(AIRCRAFTS_FILE) || loadedFiles.isStale(GATES_FILE)
+                || loadedFiles.isStale(TERMINALS_FILE);
+    }
+
+    // Public method to reload data from files (useful after external changes).
+    // Only files changed since they were loaded are parsed again.
+    public synchronized void reloadData() {
+        flightLocks.runExclusively(() -> loadData(true));
+    }
+
+    // Collections are written in the background and only when changed (see WriteBehind)
     private void saveData() {
-        JsonUtil.saveToFile(flights, FLIGHTS_FILE);
-        JsonUtil.saveToFile(routes, ROUTES_FILE);
-        JsonUtil.saveToFile(aircrafts, AIRCRAFTS_FILE);
-        JsonUtil.saveToFile(gates, GATES_FILE);
-        JsonUtil.saveToFile(terminals, TERMINALS_FILE);
+        loadedFiles.changed(FLIGHTS_FILE);
+        saveFlights();
+        saveCollection(ROUTES_FILE, routes);
+        saveCollection(AIRCRAFTS_FILE, aircrafts);
+        saveCollection(GATES_FILE, gates);
+        saveCollection(TERMINALS_FILE, terminals);
+    }
+
+    private void saveCollection(String fileName, Map<String, ?> collection) {
+        loadedFiles.changed(fileName);
+        WriteBehind.markDirty(fileName, collection.values());
     }
 
-    private void initializeFlightSeats() {
-        // Create seats for flights that don't have them yet
+    // Snapshot flights.json; the journal is only compacted once the snapshot is on disk
+    private void saveFlights() {
+        synchronized (snapshotLock) {
+            snapshotFlights();
+        }
+    }
+
+    private void snapshotFlights() {
+        if (!sharded) {
+            if (!WriteBehind.markDirty(FLIGHTS_FILE, flights.values(), flightJournal, () -> !loadedFiles.isStale(FLIGHTS_FILE))) {
+                WriteBehind.catchUp(catchingUp, this::reloadData);
+            }
+            return;
+        }
+        
+        // Headers plus the shards of the flights changed since the last snapshot. Seat
+        // writes mark their shard dirty before journaling, so taking the mark first makes
+        // every record before it covered by a shard written here.
+        long mark = flightJournal.mark();
+        List<Flight> headers = new ArrayList<>(flights.values());
+        Map<String, Long> shardVersions = new HashMap<>(dirtyShards);
+        if (loadedFiles.isStale(FLIGHTS_FILE)) {
+            // Behind the journal (see WriteBehind.markDirty)
+            WriteBehind.catchUp(catchingUp, this::reloadData);
+            return;
+        }
+        Map<String, SeatIndex> shards = new HashMap<>();
+        for (String flightId : shardVersions.keySet()) {
+            shards.put(flightId, null); // deleted unless the flight still exists
+        }
+        for (String flightId : shardVersions.keySet()) {
+            Flight flight = flights.get(flightId);
+            if (flight == null) {
+                continue;
+            }
+            if (!flight.isSeatListLoaded()) {
+                // Detached by an earlier snapshot not written yet, or else only the header
+                // changed and the shard is current
+                SeatIndex unsaved = unsavedSeats.get(flightId);
+                if (unsaved != null) {
+                    shards.put(flightId, unsaved);
+                } else {
+                    shards.remove(flightId);
+                }
+                continue;
+            }
+            SeatIndex index = flight.getSeatIndex();
+            shards.put(flightId, index);
+            if (index.getInventory().getHeldCount() > 0) {
+                continue; // seats on hold keep the list attached until the holds end
+            }
+            
+            // Detach the list so it can be evicted once written; until then it is held in
+            // unsavedSeats, and the header keeps its counts
+            flight.setSeatCounts(flight.getAvailableSeatsCount(), flight.getSoldSeatsCount());
+            unsavedSeats.put(flightId, index);
+            seatCache.put(flightId, new SoftReference<>(index));
+            flight.setSeats(null);
+        }
+        
+        WriteBehind.markDirty(FLIGHTS_FILE, () -> {
+            for (Map.Entry<String, SeatIndex> shard : shards.entrySet()) {
+                String fileName = shardFile(shard.getKey());
+                boolean saved = shard.getValue() != null
+                        ? JsonUtil.saveToFile(shard.getValue().getSeats(), fileName)
+                        : JsonUtil.deleteDataFile(fileName);
+                if (!saved) {
+                    return false;
+                }
+            }
+            if (!JsonUtil.saveToFile(headers, FLIGHTS_FILE, ModelCodecs.FLIGHT_HEADER)) {
+                return false;
+            }
+            flightJournal.discardUpTo(mark);
+            for (Map.Entry<String, Long> written : shardVersions.entrySet()) {
+                dirtyShards.remove(written.getKey(), written.getValue());
+            }
+            for (Map.Entry<String, SeatIndex> shard : shards.entrySet()) {
+                if (shard.getValue() != null) {
+                    unsavedSeats.remove(shard.getKey(), shard.getValue());
+                }
+            }
+            return true;
+        });
+    }
+
+    // Record a flight mutation as one appended journal record instead of rewriting flights.json
+    private void journalFlightChange(String op, String flightId, String payload) {
+        touchShard(flightId);
+        loadedFiles.changed(FLIGHTS_FILE);
+        if (!flightJournal.append(op, flightId, payload) || flightJournal.needsCompaction()) {
+            saveFlights();
+        }
+    }
+
+    private void replayFlightJournal(Map<String, Flight> loaded) {
+        for (Journal.Entry entry : flightJournal.readEntries()) {
+            // Replayed records are dropped at the next snapshot, so their shards must be written
+            touchShard(entry.getKey());
+            switch (entry.getOp()) {
+                case OP_SEATS:
+                    Flight flight = loaded.get(entry.getKey());
+                    if (flight != null) {
+                        applySeatChanges(flight, JsonUtil.fromJsonList(entry.getPayload(), FlightSeat.class));
+                    }
+                    break;
+                case OP_FLIGHT:
+                    Flight replayed = JsonUtil.fromJson(entry.getPayload(), Flight.class);
+                    if (replayed != null) {
+                        replaceOrAddFlight(loaded, replayed);
+                    }
+                    break;
+                case OP_DELETE:
+                    loaded.remove(entry.getKey());
+                    break;
+                default:
+                    System.err.println("Unknown flight journal record " + entry.getOp());
+            }
+        }
+    }
+
+    // Replace the flight with the same id in place, or add it at the end
+    private void replaceOrAddFlight(Map<String, Flight> map, Flight flight) {
+        Flight existing = map.put(flight.getId(), flight);
+        if (existing == null || existing == flight) {
+            return;
+        }
+        // A header-only flight keeps the seats already loaded for it, and a flight sharing
+        // the old seat list shares its index, so claims in progress use the same inventory
+        if (sharded && !flight.isSeatListLoaded() && existing.isSeatListLoaded()
+                || flight.getSeats() == existing.getSeats() && existing.getSeats() != null) {
+            flight.attachSeats(existing.getSeatIndex());
+        }
+    }
+
+    private void indexFlightNumbers(Map<String, Flight> map) {
+        Map<String, String> numbers = new HashMap<>();
+        for (Flight flight : map.values()) {
+            numbers.put(flight.getId(), flight.getFlightNumber());
+        }
+        flightNumbers = numbers;
+        flightsByNumber = Indexes.byKey(map.values(), Flight::getFlightNumber);
+    }
+
+    // Update the number index after the flight with flightId was added, changed or
+    // (with a null flight) deleted. The index is changed on a copy, as readers look
+    // numbers up without locking.
+    private void reindexFlightNumber(String flightId, Flight flight) {
+        Map<String, Flight> byNumber = new HashMap<>(flightsByNumber);
+        String oldNumber = flight != null
+                ? flightNumbers.put(flightId, flight.getFlightNumber())
+                : flightNumbers.remove(flightId);
+        String number = flight != null ? flight.getFlightNumber() : null;
+        if (oldNumber != null && !oldNumber.equals(number)) {
+            Flight holder = byNumber.get(oldNumber);
+            if (holder != null && holder.getId().equals(flightId)) {
+                byNumber.remove(oldNumber);
+                // Another flight may share the old number
+                for (Flight other : flights.values()) {
+                    if (oldNumber.equals(flightNumbers.get(other.getId()))) {
+                        byNumber.put(oldNumber, other);
+                        break;
+                    }
+                }
+            }
+        }
+        if (flight != null) {
+            Flight holder = byNumber.get(number);
+            if (holder == null || holder.getId().equals(flightId)) {
+                byNumber.put(number, flight);
+            }
+        }
+        flightsByNumber = byNumber;
+    }
+
+    // Create seats for flights that don't have them yet; true if any were created
+    private boolean initializeFlightSeats(Collection<Flight> loaded) {
         boolean seatsCreated = false;
-        for (Flight flight : flights) {
+        for (Flight flight : loaded) {
             if (flight.getSeats() == null || flight.getSeats().isEmpty()) {
                 createSeatsForFlight(flight);
                 seatsCreated = true;
             }
         }
-        // Save data if any seats were created
-        if (seatsCreated) {
-            saveData();
-        }
+        return seatsCreated;
     }
 
     private void createSeatsForFlight(Flight flight) {
@@ -102,6 +711,7 @@ public class FlightService {
                 }
             }
             flight.setSeats(seats);
+            touchShard(flight.getId());
         }
     }
 
@@ -109,34 +719,37 @@ public class FlightService {
         // Initialize default terminals
         Terminal terminal1 = new Terminal("T1", "Terminal 1", "DOMESTIC");
         Terminal terminal2 = new Terminal("T2", "Terminal 2", "INTERNATIONAL");
-        terminals.add(terminal1);
-        terminals.add(terminal2);
+        terminals.put(terminal1.getId(), terminal1);
+        terminals.put(terminal2.getId(), terminal2);
 
         // Initialize default gates
         for (int i = 1; i <= 10; i++) {
             String terminalType = i <= 5 ? "T1" : "T2";
-            gates.add(new Gate("G" + i, "G" + i, terminalType));
+            gates.put("G" + i, new Gate("G" + i, "G" + i, terminalType));
         }
 
         // Initialize default routes
-        routes.add(new Route("R1", "New York", "Los Angeles", 3944, 360));
-        routes.add(new Route("R2", "London", "Paris", 344, 75));
-        routes.add(new Route("R3", "Tokyo", "Seoul", 1160, 135));
-        routes.add(new Route("R4", "Dubai", "Mumbai", 1926, 195));
+        routes.put("R1", new Route("R1", "New York", "Los Angeles", 3944, 360));
+        routes.put("R2", new Route("R2", "London", "Paris", 344, 75));
+        routes.put("R3", new Route("R3", "Tokyo", "Seoul", 1160, 135));
+        routes.put("R4", new Route("R4", "Dubai", "Mumbai", 1926, 195));
 
         // Initialize default aircrafts
-        aircrafts.add(new Aircraft("A1", "Boeing 737", "N12345", 180, "Boeing", "boeing737.jpg"));
-        aircrafts.add(new Aircraft("A2", "Airbus A320", "F-WXYZ", 150, "Airbus", "airbusa320.jpg"));
-        aircrafts.add(new Aircraft("A3", "Boeing 777", "G-ABCD", 300, "Boeing", "boeing777.jpg"));
+        aircrafts.put("A1", new Aircraft("A1", "Boeing 737", "N12345", 180, "Boeing", "boeing737.jpg"));
+        aircrafts.put("A2", new Aircraft("A2", "Airbus A320", "F-WXYZ", 150, "Airbus", "airbusa320.jpg"));
+        aircrafts.put("A3", new Aircraft("A3", "Boeing 777", "G-ABCD", 300, "Boeing", "boeing777.jpg"));
 
         // Initialize sample flights
         LocalDateTime now = LocalDateTime.now();
-        flights.add(new Flight("F1", "AA101", "R1", "A1", now.plusHours(2), now.plusHours(8), 299.99));
-        flights.add(new Flight("F2", "BA201", "R2", "A2", now.plusHours(4), now.plusHours(5).plusMinutes(15), 150.00));
-        flights.add(new Flight("F3", "JL301", "R3", "A3", now.plusDays(1), now.plusDays(1).plusHours(2).plusMinutes(15), 450.00));
+        flights.put("F1", new Flight("F1", "AA101", "R1", "A1", now.plusHours(2), now.plusHours(8), 299.99));
+        flights.put("F2", new Flight("F2", "BA201", "R2", "A2", now.plusHours(4), now.plusHours(5).plusMinutes(15), 150.00));
+        flights.put("F3", new Flight("F3", "JL301", "R3", "A3", now.plusDays(1), now.plusDays(1).plusHours(2).plusMinutes(15), 450.00));
+        indexFlightNumbers(flights);
+        searchIndex = FlightSearchIndex.build(routes.values(), flights.values());
+        departureIndex = DepartureIndex.build(flights.values());
 
         // Initialize seats for all flights
-        for (Flight flight : flights) {
+        for (Flight flight : flights.values()) {
             createSeatsForFlight(flight);
         }
         
@@ -145,51 +758,95 @@ public class FlightService {
 
     // Flight management
     public List<Flight> getAllFlights() {
-        return new ArrayList<>(flights);
+        return new ArrayList<>(flights.values());
     }
 
     public Flight getFlightById(String id) {
-        return flights.stream().filter(f -> f.getId().equals(id)).findFirst().orElse(null);
+        return flights.get(id);
     }
 
     public Flight getFlightByNumber(String flightNumber) {
-        return flights.stream().filter(f -> f.getFlightNumber().equals(flightNumber)).findFirst().orElse(null);
+        return flightsByNumber.get(flightNumber);
     }
 
+    // Flights whose route's departure and arrival cities contain the given text (ignoring
+    // case), on the given day if date is not null. Only matching flights are looked at.
     public List<Flight> searchFlights(String departure, String arrival, LocalDateTime date) {
-        return flights.stream()
-                .filter(f -> {
-                    Route route = getRouteById(f.getRouteId());
-                    return route != null && 
-                           route.getDeparture().toLowerCase().contains(departure.toLowerCase()) &&
-                           route.getArrival().toLowerCase().contains(arrival.toLowerCase()) &&
-                           (date == null || f.getDepartureTime().toLocalDate().equals(date.toLocalDate()));
-                })
-                .collect(Collectors.toList());
-    }
-
-    public void addFlight(Flight flight) {
-        flights.add(flight);
-        createSeatsForFlight(flight);
-        saveData();
+        return flightsByIds(searchIndex.search(departure, arrival, date != null ? date.toLocalDate() : null));
     }
 
-    public void updateFlight(Flight flight) {
-        flights.removeIf(f -> f.getId().equals(flight.getId()));
-        flights.add(flight);
-        saveData();
+    // Flights departing from (inclusive) to (exclusive), ordered by departure time
+    public List<Flight> getFlightsDepartingBetween(LocalDateTime from, LocalDateTime to) {
+        return flightsByIds(departureIndex.between(from, to));
     }
 
-    public void deleteFlight(String flightId) {
-        flights.removeIf(f -> f.getId().equals(flightId));
-        saveData();
+    // Flights departing at or after time, ordered by departure time
+    public List<Flight> getFlightsDepartingAfter(LocalDateTime time) {
+        return flightsByIds(departureIndex.between(time, null));
+    }
+
+    // Flights that departed before time (e.g. now), ordered by departure time
+    public List<Flight> getFlightsDepartingBefore(LocalDateTime time) {
+        return flightsByIds(departureIndex.between(null, time));
+    }
+
+    public List<Flight> getFlightsDepartingOn(LocalDate date) {
+        return getFlightsDepartingBetween(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    private List<Flight> flightsByIds(List<String> flightIds) {
+        Map<String, Flight> current = flights;
+        List<Flight> result = new ArrayList<>(flightIds.size());
+        for (String flightId : flightIds) {
+            Flight flight = current.get(flightId);
+            if (flight != null) {
+                result.add(flight);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void addFlight(Flight flight) {
+        flightLocks.run(flight.getId(), () -> {
+            putFlight(flight);
+            createSeatsForFlight(flight);
+            journalFlightChange(OP_FLIGHT, flight.getId(), JsonUtil.toJson(flight));
+        });
+    }
+
+    public synchronized void updateFlight(Flight flight) {
+        flightLocks.run(flight.getId(), () -> {
+            putFlight(flight);
+            journalFlightChange(OP_FLIGHT, flight.getId(), JsonUtil.toJson(flight));
+        });
+    }
+
+    private void putFlight(Flight flight) {
+        Map<String, Flight> updated = flights.containsKey(flight.getId()) ? flights : new LinkedHashMap<>(flights);
+        replaceOrAddFlight(updated, flight);
+        flights = updated;
+        reindexFlightNumber(flight.getId(), flight);
+        searchIndex.putFlight(flight);
+        departureIndex.putFlight(flight);
+    }
+
+    public synchronized void deleteFlight(String flightId) {
+        flightLocks.run(flightId, () -> {
+            flights = Indexes.without(flights, flightId);
+            reindexFlightNumber(flightId, null);
+            searchIndex.removeFlight(flightId);
+            departureIndex.removeFlight(flightId);
+            seatCache.remove(flightId);
+            unsavedSeats.remove(flightId);
+            journalFlightChange(OP_DELETE, flightId, "null");
+        });
     }
 
     // Flight seat management - now working with seats within Flight objects
     public List<FlightSeat> getFlightSeats(String flightId) {
         Flight flight = getFlightById(flightId);
-        if (flight != null && flight.getSeats() != null) {
-            return new ArrayList<>(flight.getSeats());
+        if (flight != null) {
+            return new ArrayList<>(seatsOf(flight));
         }
         return new ArrayList<>();
     }
@@ -197,132 +854,162 @@ public class FlightService {
     public List<FlightSeat> getAvailableSeats(String flightId) {
         Flight flight = getFlightById(flightId);
         if (flight != null) {
-            return flight.getAvailableSeats();
+            return seatsOf(flight).stream().filter(FlightSeat::isAvailable).collect(Collectors.toList());
         }
         return new ArrayList<>();
     }
 
+    // Seat counts for listings; these use the flight header and do not load the seats
+    public int getAvailableSeatsCount(String flightId) {
+        Flight flight = getFlightById(flightId);
+        if (flight == null) {
+            return 0;
+        }
+        if (!flight.hasSeatCounts()) {
+            return seatIndexOf(flight).getInventory().getAvailableCount();
+        }
+        return flight.getAvailableSeatsCount();
+    }
+
+    public int getSoldSeatsCount(String flightId) {
+        Flight flight = getFlightById(flightId);
+        if (flight == null) {
+            return 0;
+        }
+        if (!flight.hasSeatCounts()) {
+            return seatIndexOf(flight).getInventory().getSoldCount();
+        }
+        return flight.getSoldSeatsCount();
+    }
+
     public FlightSeat getSeatByFlightAndNumber(String flightId, String seatNumber) {
         Flight flight = getFlightById(flightId);
         if (flight != null) {
-            return flight.getSeatByNumber(seatNumber);
+            return seatIndexOf(flight).get(seatNumber);
         }
         return null;
     }
 
     public void updateFlightSeat(FlightSeat seat, String flightId) {
-        Flight flight = getFlightById(flightId);
-        if (flight != null) {
-            FlightSeat existingSeat = flight.getSeatByNumber(seat.getSeatNumber());
-            if (existingSeat != null) {
-                existingSeat.setStatus(seat.getStatus());
-                existingSeat.setPassengerId(seat.getPassengerId());
-                saveData();
+        List<FlightSeat> seats = new ArrayList<>();
+        seats.add(seat);
+        updateFlightSeats(flightId, seats);
+    }
+
+    // Apply several seat changes on one flight as a single journal record
+    public void updateFlightSeats(String flightId, List<FlightSeat> seats) {
+        flightLocks.run(flightId, () -> {
+            Flight flight = getFlightById(flightId);
+            if (flight == null) {
+                return;
             }
-        }
+            List<FlightSeat> changed = applySeatChanges(flight, seats);
+            if (!changed.isEmpty()) {
+                journalFlightChange(OP_SEATS, flightId, JsonUtil.toJson(changed));
+            }
+        });
     }
 
     // Route management
     public List<Route> getAllRoutes() {
-        return new ArrayList<>(routes);
+        return new ArrayList<>(routes.values());
     }
 
     public Route getRouteById(String id) {
-        return routes.stream().filter(r -> r.getId().equals(id)).findFirst().orElse(null);
+        return routes.get(id);
     }
 
-    public void addRoute(Route route) {
-        routes.add(route);
-        saveData();
+    public synchronized void addRoute(Route route) {
+        routes = Indexes.with(routes, route.getId(), route);
+        searchIndex.putRoute(route);
+        saveCollection(ROUTES_FILE, routes);
     }
 
-    public void updateRoute(Route route) {
-        routes.removeIf(r -> r.getId().equals(route.getId()));
-        routes.add(route);
-        saveData();
+    public synchronized void updateRoute(Route route) {
+        routes = Indexes.with(routes, route.getId(), route);
+        searchIndex.putRoute(route);
+        saveCollection(ROUTES_FILE, routes);
     }
 
-    public void deleteRoute(String routeId) {
-        routes.removeIf(r -> r.getId().equals(routeId));
-        saveData();
+    public synchronized void deleteRoute(String routeId) {
+        routes = Indexes.without(routes, routeId);
+        searchIndex.removeRoute(routeId);
+        saveCollection(ROUTES_FILE, routes);
     }
 
     // Aircraft management
     public List<Aircraft> getAllAircrafts() {
-        return new ArrayList<>(aircrafts);
+        return new ArrayList<>(aircrafts.values());
     }
 
     public Aircraft getAircraftById(String id) {
-        return aircrafts.stream().filter(a -> a.getId().equals(id)).findFirst().orElse(null);
+        return aircrafts.get(id);
     }
 
-    public void addAircraft(Aircraft aircraft) {
-        aircrafts.add(aircraft);
-        saveData();
+    public synchronized void addAircraft(Aircraft aircraft) {
+        aircrafts = Indexes.with(aircrafts, aircraft.getId(), aircraft);
+        saveCollection(AIRCRAFTS_FILE, aircrafts);
     }
 
-    public void updateAircraft(Aircraft aircraft) {
-        aircrafts.removeIf(a -> a.getId().equals(aircraft.getId()));
-        aircrafts.add(aircraft);
-        saveData();
+    public synchronized void updateAircraft(Aircraft aircraft) {
+        aircrafts = Indexes.with(aircrafts, aircraft.getId(), aircraft);
+        saveCollection(AIRCRAFTS_FILE, aircrafts);
     }
 
-    public void deleteAircraft(String aircraftId) {
-        aircrafts.removeIf(a -> a.getId().equals(aircraftId));
-        saveData();
+    public synchronized void deleteAircraft(String aircraftId) {
+        aircrafts = Indexes.without(aircrafts, aircraftId);
+        saveCollection(AIRCRAFTS_FILE, aircrafts);
     }
 
     // Gate management
     public List<Gate> getAllGates() {
-        return new ArrayList<>(gates);
+        return new ArrayList<>(gates.values());
     }
 
     public Gate getGateById(String id) {
-        return gates.stream().filter(g -> g.getId().equals(id)).findFirst().orElse(null);
+        return gates.get(id);
     }
 
     public List<Gate> getAvailableGates() {
-        return gates.stream().filter(g -> g.isAvailable()).collect(Collectors.toList());
+        return gates.values().stream().filter(g -> g.isAvailable()).collect(Collectors.toList());
     }
 
-    public void addGate(Gate gate) {
-        gates.add(gate);
-        saveData();
+    public synchronized void addGate(Gate gate) {
+        gates = Indexes.with(gates, gate.getId(), gate);
+        saveCollection(GATES_FILE, gates);
     }
 
-    public void updateGate(Gate gate) {
-        gates.removeIf(g -> g.getId().equals(gate.getId()));
-        gates.add(gate);
-        saveData();
+    public synchronized void updateGate(Gate gate) {
+        gates = Indexes.with(gates, gate.getId(), gate);
+        saveCollection(GATES_FILE, gates);
     }
 
-    public void deleteGate(String gateId) {
-        gates.removeIf(g -> g.getId().equals(gateId));
-        saveData();
+    public synchronized void deleteGate(String gateId) {
+        gates = Indexes.without(gates, gateId);
+        saveCollection(GATES_FILE, gates);
     }
 
     // Terminal management
     public List<Terminal> getAllTerminals() {
-        return new ArrayList<>(terminals);
+        return new ArrayList<>(terminals.values());
     }
 
     public Terminal getTerminalById(String id) {
-        return terminals.stream().filter(t -> t.getId().equals(id)).findFirst().orElse(null);
+        return terminals.get(id);
     }
 
-    public void addTerminal(Terminal terminal) {
-        terminals.add(terminal);
-        saveData();
+    public synchronized void addTerminal(Terminal terminal) {
+        terminals = Indexes.with(terminals, terminal.getId(), terminal);
+        saveCollection(TERMINALS_FILE, terminals);
     }
 
-    public void updateTerminal(Terminal terminal) {
-        terminals.removeIf(t -> t.getId().equals(terminal.getId()));
-        terminals.add(terminal);
-        saveData();
+    public synchronized void updateTerminal(Terminal terminal) {
+        terminals = Indexes.with(terminals, terminal.getId(), terminal);
+        saveCollection(TERMINALS_FILE, terminals);
     }
 
-    public void deleteTerminal(String terminalId) {
-        terminals.removeIf(t -> t.getId().equals(terminalId));
-        saveData();
+    public synchronized void deleteTerminal(String terminalId) {
+        terminals = Indexes.without(terminals, terminalId);
+        saveCollection(TERMINALS_FILE, terminals);
     }
 } 
\ No newline at end of file
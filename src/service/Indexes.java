@@ -0,0 +1,44 @@
+package service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Hash indexes the services keep their collections in, so lookups by id and similar keys
+// do not scan the whole collection. Published maps are only changed in ways that do not
+// disturb readers iterating them without locking (see with and without).
+final class Indexes {
+
+    private Indexes() {
+    }
+
+    // Items by key, in collection order. Of several items with the same key the first is
+    // kept, as that is the one a linear search would have found.
+    static <T> Map<String, T> byKey(Collection<T> items, Function<? super T, String> keyOf) {
+        Map<String, T> index = new LinkedHashMap<>(Math.max(16, items.size() * 4 / 3 + 1));
+        for (T item : items) {
+            index.putIfAbsent(keyOf.apply(item), item);
+        }
+        return index;
+    }
+
+    // Map with key set to value, for maps readers iterate without locking: an existing key
+    // is replaced in place, which does not disturb iteration, while a new key is added to
+    // a copy for the caller to publish in place of map
+    static <T> Map<String, T> with(Map<String, T> map, String key, T value) {
+        Map<String, T> updated = map.containsKey(key) ? map : new LinkedHashMap<>(map);
+        updated.put(key, value);
+        return updated;
+    }
+
+    // Copy of map without key, or map itself if it has no such key
+    static <T> Map<String, T> without(Map<String, T> map, String key) {
+        if (!map.containsKey(key)) {
+            return map;
+        }
+        Map<String, T> updated = new LinkedHashMap<>(map);
+        updated.remove(key);
+        return updated;
+    }
+}
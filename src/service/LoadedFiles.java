@@ -0,0 +1,49 @@
+package service;
+
+import util.DataVersions;
+import util.JsonUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The versions of the data files a service has in memory, so reloads can skip files that
+// did not change since they were loaded (see DataVersions)
+class LoadedFiles {
+    private final Map<String, DataVersions.Version> versions = new ConcurrentHashMap<>();
+    // Files parsed at startup are taken from here instead of being read again
+    private StartupLoader preloaded;
+
+    void preloadFrom(StartupLoader loader) {
+        preloaded = loader;
+    }
+
+    // True if the file changed since it was loaded, or was never loaded
+    boolean isStale(String fileName) {
+        return !DataVersions.isCurrent(fileName, versions.get(fileName));
+    }
+
+    // Load a data file, remembering the version it was read at
+    <T> List<T> load(String fileName, Class<T> clazz) {
+        if (preloaded != null) {
+            StartupLoader.Loaded<T> loaded = preloaded.take(fileName);
+            if (loaded != null) {
+                versions.put(fileName, loaded.version);
+                return loaded.list;
+            }
+        }
+        versions.put(fileName, DataVersions.current(fileName));
+        return JsonUtil.loadFromFile(fileName, clazz);
+    }
+
+    // Record a change made through the service, so it does not count as one to reload.
+    // Synchronized so changes made on several threads at once each see the version the
+    // one before left.
+    synchronized void changed(String fileName) {
+        DataVersions.Version seen = versions.get(fileName);
+        DataVersions.Version now = DataVersions.changed(fileName, seen);
+        if (now != null) {
+            versions.put(fileName, now);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package service;
+
+import util.TimingWheel;
+
+import java.util.Collections;
+import java.util.List;
+
+// Seats held for a customer by BookingService until the hold is confirmed, released or
+// expires. Holds are not persisted.
+public final class SeatHold {
+    private final String id;
+    private final String customerId;
+    private final String flightId;
+    private final List<String> seatNumbers;
+    private volatile long expiresAt;
+    // Guarded by the customer's stripe in BookingService
+    TimingWheel.Timeout<SeatHold> timeout;
+
+    SeatHold(String id, String customerId, String flightId, List<String> seatNumbers) {
+        this.id = id;
+        this.customerId = customerId;
+        this.flightId = flightId;
+        this.seatNumbers = Collections.unmodifiableList(seatNumbers);
+    }
+
+    public String getId() { return id; }
+    public String getCustomerId() { return customerId; }
+    public String getFlightId() { return flightId; }
+    public List<String> getSeatNumbers() { return seatNumbers; }
+
+    // Time the hold ends, in epoch milliseconds
+    public long getExpiresAt() { return expiresAt; }
+    void setExpiresAt(long expiresAt) { this.expiresAt = expiresAt; }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAt;
+    }
+}
@@ -0,0 +1,120 @@
+package service;
+
+import model.*;
+import util.DataVersions;
+import util.JsonUtil;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Parses every data file in parallel at startup and hands the lists to the services built
+// from it, so the first window waits for about the largest file instead of all of them in
+// turn. Services take their files from here instead of reading them; a file that failed
+// to load is simply read again by its service.
+public class StartupLoader {
+
+    // A file parsed ahead of time, with the version it was read at
+    static final class Loaded<T> {
+        final DataVersions.Version version;
+        final List<T> list;
+
+        Loaded(DataVersions.Version version, List<T> list) {
+            this.version = version;
+            this.list = list;
+        }
+    }
+
+    private static final Map<String, Class<?>> FILES = new LinkedHashMap<>();
+
+    static {
+        FILES.put(FlightService.FLIGHTS_FILE, Flight.class);
+        FILES.put(FlightService.ROUTES_FILE, Route.class);
+        FILES.put(FlightService.AIRCRAFTS_FILE, Aircraft.class);
+        FILES.put(FlightService.GATES_FILE, Gate.class);
+        FILES.put(FlightService.TERMINALS_FILE, Terminal.class);
+        FILES.put(UserService.CUSTOMERS_FILE, Customer.class);
+        FILES.put(UserService.ADMINS_FILE, Admin.class);
+        FILES.put(BookingService.TICKETS_FILE, Ticket.class);
+    }
+
+    private final Map<String, Future<Loaded<?>>> pending = new ConcurrentHashMap<>();
+    private final Map<String, String> loadTimes = new ConcurrentHashMap<>();
+    private final long startTime = System.nanoTime();
+
+    // Starts loading every data file
+    public StartupLoader() {
+        int threads = Math.max(1, Math.min(FILES.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "startup-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Map.Entry<String, Class<?>> file : FILES.entrySet()) {
+            pending.put(file.getKey(), executor.submit(() -> load(file.getKey(), file.getValue())));
+        }
+        executor.shutdown(); // threads exit once the submitted loads are done
+    }
+
+    private Loaded<?> load(String fileName, Class<?> clazz) {
+        long start = System.nanoTime();
+        // Version first, so a change made while the file is read is seen by the next reload
+        DataVersions.Version version = DataVersions.current(fileName);
+        List<?> list = JsonUtil.loadFromFile(fileName, clazz);
+        loadTimes.put(fileName, list.size() + " records in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new Loaded<>(version, list);
+    }
+
+    public UserService createUserService() {
+        return new UserService(this);
+    }
+
+    public FlightService createFlightService() {
+        return new FlightService(this);
+    }
+
+    public BookingService createBookingService(FlightService flightService, UserService userService) {
+        return new BookingService(flightService, userService, this);
+    }
+
+    // Waits for a file and hands it over; null if it was already taken, is not a startup
+    // file or failed to load
+    @SuppressWarnings("unchecked")
+    <T> Loaded<T> take(String fileName) {
+        Future<Loaded<?>> future = pending.remove(fileName);
+        if (future == null) {
+            return null;
+        }
+        try {
+            return (Loaded<T>) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Error loading " + fileName + " at startup: " + e.getCause());
+            return null;
+        }
+    }
+
+    // Print how long each file took to parse, and the time since loading started; only with
+    // -Dstartup.timings=true
+    public void printLoadTimes() {
+        if (!Boolean.getBoolean("startup.timings")) {
+            return;
+        }
+        for (String fileName : FILES.keySet()) {
+            String time = loadTimes.get(fileName);
+            if (time != null) {
+                System.out.println("Loaded " + fileName + ": " + time);
+            }
+        }
+        System.out.println("Startup data ready in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+    }
+}
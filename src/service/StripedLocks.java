@@ -0,0 +1,85 @@
+package service;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Write locks per key (e.g. per flight): writes to different keys run in parallel unless
+// their keys hash to the same stripe, writes to one key are serialized. Work that must
+// not overlap any keyed write, like a reload that replaces whole collections, runs
+// exclusively. Readers take no lock at all; they work on published collections.
+final class StripedLocks {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantReadWriteLock keyedOrExclusive = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    StripedLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    void run(String key, Runnable action) {
+        call(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    <T> T call(String key, Supplier<T> action) {
+        keyedOrExclusive.readLock().lock();
+        try {
+            ReentrantLock stripe = stripes[stripeOf(key)];
+            stripe.lock();
+            try {
+                return action.get();
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            keyedOrExclusive.readLock().unlock();
+        }
+    }
+
+    // Run action holding the stripes of all keys, taken in stripe order so two such
+    // calls cannot deadlock
+    <T> T call(Collection<String> keys, Supplier<T> action) {
+        TreeSet<Integer> held = new TreeSet<>();
+        for (String key : keys) {
+            held.add(stripeOf(key));
+        }
+        keyedOrExclusive.readLock().lock();
+        try {
+            for (int stripe : held) {
+                stripes[stripe].lock();
+            }
+            try {
+                return action.get();
+            } finally {
+                for (int stripe : held.descendingSet()) {
+                    stripes[stripe].unlock();
+                }
+            }
+        } finally {
+            keyedOrExclusive.readLock().unlock();
+        }
+    }
+
+    private static int stripeOf(String key) {
+        return (key != null ? key.hashCode() & 0x7fffffff : 0) % STRIPES;
+    }
+
+    // Run action once no keyed write is in progress, holding off new ones until it is done
+    void runExclusively(Runnable action) {
+        keyedOrExclusive.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            keyedOrExclusive.writeLock().unlock();
+        }
+    }
+}
@@ -1,168 +1,347 @@
 package service;
 
 import model.*;
+import util.DataDirectoryWatcher;
+import util.IdAllocator;
+import util.Journal;
 import util.JsonUtil;
+import util.WriteBehind;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+// Mutators and reloads are synchronized; readers take no lock. Reloaded collections are
+// completed before they are published, and a new user is added to a copy that replaces the
+// published map (see Indexes.with), so readers never see a map being changed under them.
 public class UserService {
-    private List<Customer> customers;
-    private List<Admin> admins;
-    private static final String CUSTOMERS_FILE = "customers.json";
-    private static final String ADMINS_FILE = "admins.json";
+    // By id, in file order (see Indexes)
+    private volatile Map<String, Customer> customers;
+    private volatile Map<String, Admin> admins;
+    // Customers and admins by normalised email (see emailKey), customers first, and the key
+    // each user is indexed under, since views edit users in place before calling update
+    private volatile Map<String, List<User>> usersByEmail = new ConcurrentHashMap<>();
+    private volatile Map<String, String> customerEmailKeys = new HashMap<>();
+    private volatile Map<String, String> adminEmailKeys = new HashMap<>();
+    static final String CUSTOMERS_FILE = "customers.json";
+    static final String ADMINS_FILE = "admins.json";
+    private static final String OP_CUSTOMER = "CUSTOMER";
+    private static final String OP_DELETE = "DELETE";
+    private static final IdAllocator CUSTOMER_IDS = IdAllocator.forSequence("customer", "CUST", IdAllocator.HEX_DIGITS, 6);
+    private static final IdAllocator ADMIN_IDS = IdAllocator.forSequence("admin", "ADMIN", IdAllocator.HEX_DIGITS, 6);
+    private final Journal customerJournal = Journal.forFile(CUSTOMERS_FILE);
+    private final LoadedFiles loadedFiles = new LoadedFiles();
+    private final AtomicBoolean catchingUp = new AtomicBoolean();
+    // Held here so it lives exactly as long as this service (the watcher holds it weakly)
+    private final DataDirectoryWatcher.Listener fileListener = this::dataFilesChanged;
 
     public UserService() {
-        customers = new ArrayList<>();
-        admins = new ArrayList<>();
-        loadUsers();
+        this(null);
+    }
+
+    // Takes the files already parsed by loader, if given
+    UserService(StartupLoader loader) {
+        loadedFiles.preloadFrom(loader);
+        customers = new LinkedHashMap<>();
+        admins = new LinkedHashMap<>();
+        loadUsers(false);
         if (admins.isEmpty() && !dataFilesExist()) {
             initializeDefaultAdmin();
         }
+        DataDirectoryWatcher.addListener(fileListener);
+    }
+
+    // Called on the watcher thread when files in data/ change
+    private void dataFilesChanged(Set<String> fileNames) {
+        if (fileNames.isEmpty() || fileNames.contains(CUSTOMERS_FILE) || fileNames.contains(ADMINS_FILE)) {
+            reloadData();
+        }
     }
 
     private boolean dataFilesExist() {
         java.io.File dataDir = new java.io.File("data");
         if (!dataDir.exists()) return false;
         
-        java.io.File customersFile = new java.io.File("data/" + CUSTOMERS_FILE);
-        java.io.File adminsFile = new java.io.File("data/" + ADMINS_FILE);
+        // Sizes cover whichever storage format (JSON or binary) the files were saved in
+        return JsonUtil.dataFileSize(CUSTOMERS_FILE) > 10 || 
+               JsonUtil.dataFileSize(ADMINS_FILE) > 10;
+    }
+
+    // Load both files, or with onlyChanged only the files changed since they were loaded
+    private void loadUsers(boolean onlyChanged) {
+        boolean loadCustomers = !onlyChanged || loadedFiles.isStale(CUSTOMERS_FILE);
+        boolean loadAdmins = !onlyChanged || loadedFiles.isStale(ADMINS_FILE);
+        if (!loadCustomers && !loadAdmins) {
+            return;
+        }
+        
+        // Pending background writes may hold changes newer than the files
+        WriteBehind.flush();
         
-        return (customersFile.exists() && customersFile.length() > 10) || 
-               (adminsFile.exists() && adminsFile.length() > 10);
+        if (loadCustomers) {
+            Map<String, Customer> loaded = Indexes.byKey(loadedFiles.load(CUSTOMERS_FILE, Customer.class), Customer::getId);
+            replayCustomerJournal(loaded);
+            customers = loaded;
+        }
+        if (loadAdmins) {
+            admins = Indexes.byKey(loadedFiles.load(ADMINS_FILE, Admin.class), Admin::getId);
+        }
+        indexEmails();
+    }
+
+    // Rebuild the email index from the current collections
+    private void indexEmails() {
+        Map<String, List<User>> byEmail = new ConcurrentHashMap<>();
+        Map<String, String> customerKeys = new HashMap<>();
+        Map<String, String> adminKeys = new HashMap<>();
+        for (Customer customer : customers.values()) {
+            addToEmailIndex(byEmail, customerKeys, customer);
+        }
+        for (Admin admin : admins.values()) {
+            addToEmailIndex(byEmail, adminKeys, admin);
+        }
+        customerEmailKeys = customerKeys;
+        adminEmailKeys = adminKeys;
+        usersByEmail = byEmail;
     }
 
-    private void loadUsers() {
-        customers = JsonUtil.loadFromFile(CUSTOMERS_FILE, Customer.class);
-        admins = JsonUtil.loadFromFile(ADMINS_FILE, Admin.class);
+    // Update the email index after user was added or changed, or (with a null user) the
+    // user with id was deleted
+    private void reindexEmail(Class<? extends User> type, String id, User user) {
+        Map<String, String> indexedKeys = type == Admin.class ? adminEmailKeys : customerEmailKeys;
+        String oldKey = indexedKeys.remove(id);
+        if (oldKey != null) {
+            List<User> users = new ArrayList<>(usersByEmail.getOrDefault(oldKey, Collections.emptyList()));
+            users.removeIf(u -> type.isInstance(u) && u.getId().equals(id));
+            if (users.isEmpty()) {
+                usersByEmail.remove(oldKey);
+            } else {
+                usersByEmail.put(oldKey, Collections.unmodifiableList(users));
+            }
+        }
+        if (user != null) {
+            addToEmailIndex(usersByEmail, indexedKeys, user);
+        }
     }
 
+    // Lists are replaced, never changed, so readers need no lock
+    private static void addToEmailIndex(Map<String, List<User>> byEmail, Map<String, String> indexedKeys, User user) {
+        String key = emailKey(user.getEmail());
+        if (key == null) {
+            return;
+        }
+        List<User> users = new ArrayList<>(byEmail.getOrDefault(key, Collections.emptyList()));
+        int position = users.size();
+        if (user instanceof Customer) {
+            // Customers are checked before admins
+            while (position > 0 && users.get(position - 1) instanceof Admin) {
+                position--;
+            }
+        }
+        users.add(position, user);
+        byEmail.put(key, Collections.unmodifiableList(users));
+        indexedKeys.put(user.getId(), key);
+    }
+
+    // Emails are matched ignoring case and surrounding blanks
+    private static String emailKey(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private List<User> usersWithEmail(String email) {
+        String key = emailKey(email);
+        return key != null ? usersByEmail.getOrDefault(key, Collections.emptyList()) : Collections.emptyList();
+    }
+
+    // Collections are written in the background and only when changed (see WriteBehind)
     private void saveData() {
-        JsonUtil.saveToFile(customers, CUSTOMERS_FILE);
-        JsonUtil.saveToFile(admins, ADMINS_FILE);
+        saveCustomers();
+        saveAdmins();
+    }
+
+    // Snapshot customers.json; the journal is only compacted once the snapshot is on disk.
+    // If another instance journaled customers since these were loaded, they are reloaded
+    // in the background instead and a later change compacts (see WriteBehind).
+    private void saveCustomers() {
+        if (!WriteBehind.markDirty(CUSTOMERS_FILE, customers.values(), customerJournal, () -> !loadedFiles.isStale(CUSTOMERS_FILE))) {
+            WriteBehind.catchUp(catchingUp, this::reloadData);
+        }
     }
 
-    // Method to reload data from files (useful for UI refresh)
-    public void reloadData() {
-        loadUsers();
+    private void saveAdmins() {
+        loadedFiles.changed(ADMINS_FILE);
+        WriteBehind.markDirty(ADMINS_FILE, admins.values());
+    }
+
+    // Record a customer change as one appended journal record instead of rewriting customers.json
+    private void journalCustomerChange(String op, String customerId, String payload) {
+        loadedFiles.changed(CUSTOMERS_FILE);
+        if (!customerJournal.append(op, customerId, payload) || customerJournal.needsCompaction()) {
+            saveCustomers();
+        }
+    }
+
+    private void replayCustomerJournal(Map<String, Customer> loaded) {
+        for (Journal.Entry entry : customerJournal.readEntries()) {
+            if (OP_CUSTOMER.equals(entry.getOp())) {
+                Customer customer = JsonUtil.fromJson(entry.getPayload(), Customer.class);
+                if (customer != null) {
+                    loaded.put(customer.getId(), customer);
+                }
+            } else if (OP_DELETE.equals(entry.getOp())) {
+                loaded.remove(entry.getKey());
+            }
+        }
+    }
+
+    // True if customers or admins changed since they were loaded (see FlightService)
+    public boolean hasChangedFiles() {
+        return loadedFiles.isStale(CUSTOMERS_FILE) || loadedFiles.isStale(ADMINS_FILE);
+    }
+
+    // Method to reload data from files (useful for UI refresh).
+    // Only files changed since they were loaded are parsed again.
+    public synchronized void reloadData() {
+        loadUsers(true);
     }
 
     private void initializeDefaultAdmin() {
         // Create default super admin
         Admin superAdmin = new Admin("ADMIN001", "Super Admin", "admin@airport.com", 
                                    "+1234567890", "Other", "admin123", true);
-        admins.add(superAdmin);
+        admins.put(superAdmin.getId(), superAdmin);
         
         // Create default admin
         Admin admin = new Admin("ADMIN002", "Admin User", "admin2@airport.com", 
                                "+1234567891", "Other", "admin123", false);
-        admins.add(admin);
+        admins.put(admin.getId(), admin);
         
+        indexEmails();
         saveData();
     }
 
+    // Customers are checked first, then admins
     public User authenticate(String email, String password) {
-        // Check customers first
-        Customer customer = customers.stream()
-                .filter(c -> c.getEmail().equals(email) && c.getPassword().equals(password))
-                .findFirst()
-                .orElse(null);
-        
-        if (customer != null) {
-            return customer;
+        for (User user : usersWithEmail(email)) {
+            if (user.getPassword() != null && user.getPassword().equals(password)) {
+                return user;
+            }
         }
-
-        System.out.println("Checking admins --> " + admins.size());
-        // Check admins
-        return admins.stream()
-                .filter(a -> a.getEmail().equals(email) && a.getPassword().equals(password))
-                .findFirst()
-                .orElse(null);
+        return null;
     }
 
     public Customer authenticateCustomer(String email, String password) {
-        return customers.stream()
-                .filter(c -> c.getEmail().equals(email) && c.getPassword().equals(password))
-                .findFirst()
-                .orElse(null);
+        for (User user : usersWithEmail(email)) {
+            if (user instanceof Customer && user.getPassword() != null && user.getPassword().equals(password)) {
+                return (Customer) user;
+            }
+        }
+        return null;
     }
 
     public Admin authenticateAdmin(String email, String password) {
-        return admins.stream()
-                .filter(a -> a.getEmail().equals(email) && a.getPassword().equals(password))
-                .findFirst()
-                .orElse(null);
+        for (User user : usersWithEmail(email)) {
+            if (user instanceof Admin && user.getPassword() != null && user.getPassword().equals(password)) {
+                return (Admin) user;
+            }
+        }
+        return null;
     }
 
-    public boolean registerCustomer(String name, String phone, String email, String gender, String password) {
+    public synchronized boolean registerCustomer(String name, String phone, String email, String gender, String password) {
         // Check if email already exists
         if (isEmailTaken(email)) {
             return false;
         }
 
-        String customerId = "CUST" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+        String customerId = CUSTOMER_IDS.next(id -> customers.containsKey(id));
         Customer customer = new Customer(customerId, name, email, phone, gender, password);
-        customers.add(customer);
-        saveData();
+        customers = Indexes.with(customers, customerId, customer);
+        reindexEmail(Customer.class, customerId, customer);
+        journalCustomerChange(OP_CUSTOMER, customerId, JsonUtil.toJson(customer));
         return true;
     }
 
+    // True if a customer or admin has this email, ignoring case
     public boolean isEmailTaken(String email) {
-        return customers.stream().anyMatch(c -> c.getEmail().equals(email)) ||
-               admins.stream().anyMatch(a -> a.getEmail().equals(email));
+        return !usersWithEmail(email).isEmpty();
     }
 
     // Customer management
     public List<Customer> getAllCustomers() {
-        return new ArrayList<>(customers);
+        return new ArrayList<>(customers.values());
     }
 
     public Customer getCustomerById(String id) {
-        return customers.stream().filter(c -> c.getId().equals(id)).findFirst().orElse(null);
+        return customers.get(id);
     }
 
-    public void updateCustomer(Customer customer) {
-        customers.removeIf(c -> c.getId().equals(customer.getId()));
-        customers.add(customer);
-        saveData();
+    public synchronized void updateCustomer(Customer customer) {
+        customers = Indexes.with(customers, customer.getId(), customer);
+        reindexEmail(Customer.class, customer.getId(), customer);
+        journalCustomerChange(OP_CUSTOMER, customer.getId(), JsonUtil.toJson(customer));
     }
 
-    public void deleteCustomer(String customerId) {
-        customers.removeIf(c -> c.getId().equals(customerId));
-        saveData();
+    // Update several customers with one journal write, e.g. for a batch of bookings
+    public synchronized void updateCustomers(Collection<Customer> changed) {
+        Map<String, String> payloads = new LinkedHashMap<>();
+        for (Customer customer : changed) {
+            customers = Indexes.with(customers, customer.getId(), customer);
+            reindexEmail(Customer.class, customer.getId(), customer);
+            payloads.put(customer.getId(), JsonUtil.toJson(customer));
+        }
+        loadedFiles.changed(CUSTOMERS_FILE);
+        if (!customerJournal.appendAll(OP_CUSTOMER, payloads) || customerJournal.needsCompaction()) {
+            saveCustomers();
+        }
+    }
+
+    public synchronized void deleteCustomer(String customerId) {
+        customers = Indexes.without(customers, customerId);
+        reindexEmail(Customer.class, customerId, null);
+        journalCustomerChange(OP_DELETE, customerId, "null");
     }
 
     // Admin management
     public List<Admin> getAllAdmins() {
-        return new ArrayList<>(admins);
+        return new ArrayList<>(admins.values());
     }
 
     public Admin getAdminById(String id) {
-        return admins.stream().filter(a -> a.getId().equals(id)).findFirst().orElse(null);
+        return admins.get(id);
     }
 
-    public boolean addAdmin(String name, String phone, String email, String gender, String password, boolean isSuperAdmin) {
+    public synchronized boolean addAdmin(String name, String phone, String email, String gender, String password, boolean isSuperAdmin) {
         if (isEmailTaken(email)) {
             return false;
         }
 
-        String adminId = "ADMIN" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+        String adminId = ADMIN_IDS.next(id -> admins.containsKey(id));
         Admin admin = new Admin(adminId, name, email, phone, gender, password, isSuperAdmin);
-        admins.add(admin);
-        saveData();
+        admins = Indexes.with(admins, adminId, admin);
+        reindexEmail(Admin.class, adminId, admin);
+        saveAdmins();
         return true;
     }
 
-    public void updateAdmin(Admin admin) {
-        admins.removeIf(a -> a.getId().equals(admin.getId()));
-        admins.add(admin);
-        saveData();
+    public synchronized void updateAdmin(Admin admin) {
+        admins = Indexes.with(admins, admin.getId(), admin);
+        reindexEmail(Admin.class, admin.getId(), admin);
+        saveAdmins();
     }
 
-    public void deleteAdmin(String adminId) {
-        admins.removeIf(a -> a.getId().equals(adminId));
-        saveData();
+    public synchronized void deleteAdmin(String adminId) {
+        admins = Indexes.without(admins, adminId);
+        reindexEmail(Admin.class, adminId, null);
+        saveAdmins();
     }
 
     public boolean canDeleteAdmin(String adminId, String currentAdminId) {
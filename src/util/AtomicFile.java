@@ -0,0 +1,124 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Crash-safe replacement of a data file. Content is written to a temp file in the same
+// directory, fsynced, then renamed over the target, so readers only ever see the old or
+// the new file. Concurrent commits to the same file are coalesced: while one thread is
+// writing, later requests queue up and the next writer persists only the newest content,
+// releasing every caller it covered with a single fsync (group commit).
+public class AtomicFile {
+
+    // Produces the file content
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final Map<String, AtomicFile> FILES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private Content pending;
+    private long requested;
+    private long committed;
+    private boolean writing;
+    private boolean lastResult;
+
+    private AtomicFile(File file) {
+        this.file = file;
+    }
+
+    public static AtomicFile forFile(File file) {
+        return FILES.computeIfAbsent(file.getAbsolutePath(), path -> new AtomicFile(file));
+    }
+
+    // Persist content, possibly together with other pending commits. Returns once content
+    // (or newer content requested after it) is durably on disk; false if the write failed.
+    public boolean commit(Content content) {
+        Content toWrite;
+        long covered;
+        synchronized (this) {
+            pending = content;
+            long generation = ++requested;
+            boolean interrupted = false;
+            while (writing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (committed >= generation) {
+                return lastResult; // Covered by another thread's write
+            }
+            // This thread becomes the writer for everything requested so far
+            writing = true;
+            toWrite = pending;
+            covered = requested;
+            pending = null;
+        }
+
+        boolean ok;
+        try {
+            replace(file, toWrite);
+            ok = true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving to file " + file.getName() + ": " + e.getMessage());
+            ok = false;
+        }
+
+        synchronized (this) {
+            committed = covered;
+            lastResult = ok;
+            writing = false;
+            notifyAll();
+        }
+        return ok;
+    }
+
+    // Write content to a temp file, fsync it and atomically rename it over target
+    public static void replace(File target, Content content) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        Path temp = Files.createTempFile(dir.toPath(), target.getName() + ".", ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+                 OutputStream out = new BufferedOutputStream(fileOut)) {
+                content.writeTo(out);
+                out.flush();
+                fileOut.getChannel().force(true);
+            }
+            try {
+                Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Make the rename itself durable where the platform allows opening directories
+    private static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not supported on every platform (e.g. Windows); the rename is still atomic
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static util.BinaryWriter.*;
+
+// Reader for the binary storage format written by BinaryWriter. Records are read one at
+// a time into a reusable buffer; the string table is rebuilt as the file is read.
+public class BinaryReader implements ValueReader {
+
+    // Scopes
+    private static final int ARRAY = 1;
+    private static final int OBJECT_NAME = 2;   // inside an object, expecting a name or the end
+    private static final int OBJECT_VALUE = 3;  // inside an object, expecting a value
+
+    private final InputStream in;
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private int pos;
+    private final List<String> stringTable = new ArrayList<>();
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    // Reads and checks the file header
+    public BinaryReader(InputStream in) throws IOException {
+        this.in = in;
+        for (byte expected : MAGIC) {
+            if (in.read() != expected) {
+                throw new IOException("Not a binary data file");
+            }
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary data file version " + version);
+        }
+    }
+
+    // Advance to the next record; false at end of file
+    public boolean nextRecord() throws IOException {
+        int recordLength = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                if (shift == 0) return false;
+                throw new EOFException("Truncated record header");
+            }
+            recordLength |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+            if (shift > 28) throw new IOException("Malformed record length");
+        }
+
+        if (buffer.length < recordLength) {
+            buffer = new byte[Math.max(recordLength, buffer.length * 2)];
+        }
+        int read = 0;
+        while (read < recordLength) {
+            int n = in.read(buffer, read, recordLength - read);
+            if (n == -1) throw new EOFException("Truncated record");
+            read += n;
+        }
+        length = recordLength;
+        pos = 0;
+        stackSize = 0;
+        return true;
+    }
+
+    @Override
+    public Token peek() throws IOException {
+        if (pos >= length) {
+            if (stackSize == 0) return Token.END_DOCUMENT;
+            throw new IOException("Unexpected end of record");
+        }
+        int tag = buffer[pos] & 0xFF;
+        if (stackSize > 0 && stack[stackSize - 1] == OBJECT_NAME) {
+            if (tag == TAG_END_OBJECT) return Token.END_OBJECT;
+            if (isStringTag(tag)) return Token.NAME;
+            throw new IOException("Expected a field name");
+        }
+        switch (tag) {
+            case TAG_BEGIN_OBJECT: return Token.BEGIN_OBJECT;
+            case TAG_END_OBJECT: return Token.END_OBJECT;
+            case TAG_BEGIN_ARRAY: return Token.BEGIN_ARRAY;
+            case TAG_END_ARRAY: return Token.END_ARRAY;
+            case TAG_NULL: return Token.NULL;
+            case TAG_TRUE:
+            case TAG_FALSE:
+                return Token.BOOLEAN;
+            case TAG_INT:
+            case TAG_DOUBLE:
+                return Token.NUMBER;
+            case TAG_STRING_NEW:
+            case TAG_STRING_REF:
+            case TAG_STRING_RAW:
+                return Token.STRING;
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        valueConsumed();
+        push(ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        pos++;
+        stackSize--;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        valueConsumed();
+        push(OBJECT_NAME);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        pos++;
+        stackSize--;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        String name = readString();
+        stack[stackSize - 1] = OBJECT_VALUE;
+        return name;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        int tag = scalarTag();
+        String value;
+        switch (tag) {
+            case TAG_TRUE: pos++; value = "true"; break;
+            case TAG_FALSE: pos++; value = "false"; break;
+            case TAG_INT: pos++; value = Long.toString(readZigZag()); break;
+            case TAG_DOUBLE: pos++; value = Double.toString(readDoubleBits()); break;
+            default: value = readString(); break;
+        }
+        valueConsumed();
+        return value;
+    }
+
+    @Override
+    public String nextStringOrNull() throws IOException {
+        if (peek() == Token.NULL) {
+            nextNull();
+            return null;
+        }
+        return nextString();
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        pos++;
+        valueConsumed();
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        int tag = scalarTag();
+        if (tag == TAG_INT) {
+            pos++;
+            valueConsumed();
+            return (int) readZigZag();
+        }
+        return Integer.parseInt(nextString().trim());
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        int tag = scalarTag();
+        if (tag == TAG_INT) {
+            pos++;
+            valueConsumed();
+            return readZigZag();
+        }
+        return Long.parseLong(nextString().trim());
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        int tag = scalarTag();
+        if (tag == TAG_DOUBLE) {
+            pos++;
+            valueConsumed();
+            return readDoubleBits();
+        }
+        if (tag == TAG_INT) {
+            pos++;
+            valueConsumed();
+            return readZigZag();
+        }
+        return Double.parseDouble(nextString().trim());
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        int tag = scalarTag();
+        if (tag == TAG_TRUE || tag == TAG_FALSE) {
+            pos++;
+            valueConsumed();
+            return tag == TAG_TRUE;
+        }
+        return Boolean.parseBoolean(nextString().trim());
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY: beginArray(); depth++; break;
+                case BEGIN_OBJECT: beginObject(); depth++; break;
+                case END_ARRAY: endArray(); depth--; break;
+                case END_OBJECT: endObject(); depth--; break;
+                case NAME: nextName(); break;
+                case NULL: nextNull(); break;
+                case END_DOCUMENT: throw new IOException("Unexpected end of record");
+                default: nextString(); break;
+            }
+        } while (depth > 0);
+    }
+
+    private int scalarTag() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN) {
+            throw new IOException("Expected a string but was " + token);
+        }
+        return buffer[pos] & 0xFF;
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but was " + token);
+        }
+    }
+
+    // A value inside an object was read, so a name comes next
+    private void valueConsumed() {
+        if (stackSize > 0 && stack[stackSize - 1] == OBJECT_VALUE) {
+            stack[stackSize - 1] = OBJECT_NAME;
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private static boolean isStringTag(int tag) {
+        return tag == TAG_STRING_NEW || tag == TAG_STRING_REF || tag == TAG_STRING_RAW;
+    }
+
+    // Reads a string value at pos (tag included)
+    private String readString() throws IOException {
+        int tag = buffer[pos++] & 0xFF;
+        if (tag == TAG_STRING_REF) {
+            long index = readVarLong();
+            if (index < 0 || index >= stringTable.size()) {
+                throw new IOException("Invalid string table index " + index);
+            }
+            return stringTable.get((int) index);
+        }
+        int byteCount = (int) readVarLong();
+        if (byteCount < 0 || pos + byteCount > length) {
+            throw new IOException("String runs past end of record");
+        }
+        String value = new String(buffer, pos, byteCount, StandardCharsets.UTF_8);
+        pos += byteCount;
+        if (tag == TAG_STRING_NEW) {
+            stringTable.add(value);
+        }
+        return value;
+    }
+
+    private long readZigZag() throws IOException {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private double readDoubleBits() throws IOException {
+        if (pos + 8 > length) throw new IOException("Double runs past end of record");
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (buffer[pos++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (pos >= length) throw new IOException("Varint runs past end of record");
+            int b = buffer[pos++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 63) throw new IOException("Malformed varint");
+        }
+    }
+}
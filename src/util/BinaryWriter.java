@@ -0,0 +1,205 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writer for the compact binary storage format.
+//
+// File layout:  "AFMB" <version byte> { <varint length> <record bytes> }*
+// Each record is one list element encoded as tagged values. Integers are zigzag varints,
+// doubles are 8 raw bytes, and strings go through a per-file string table: the first
+// occurrence is written inline and every later one as a varint index into the table,
+// so repeated statuses, city names, seat labels and field names cost a byte or two.
+public class BinaryWriter implements ValueWriter {
+
+    static final byte[] MAGIC = { 'A', 'F', 'M', 'B' };
+    static final int VERSION = 1;
+
+    static final int TAG_BEGIN_OBJECT = 1;
+    static final int TAG_END_OBJECT = 2;
+    static final int TAG_BEGIN_ARRAY = 3;
+    static final int TAG_END_ARRAY = 4;
+    static final int TAG_NULL = 5;
+    static final int TAG_TRUE = 6;
+    static final int TAG_FALSE = 7;
+    static final int TAG_INT = 8;
+    static final int TAG_DOUBLE = 9;
+    static final int TAG_STRING_NEW = 10;   // inline, added to the string table
+    static final int TAG_STRING_REF = 11;   // index into the string table
+    static final int TAG_STRING_RAW = 12;   // inline, not added (long, likely unique values)
+
+    // Longer strings are not worth a table slot
+    static final int MAX_TABLE_STRING_LENGTH = 64;
+
+    private OutputStream out;
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private final byte[] prefix = new byte[5];
+    private final Map<String, Integer> stringTable = new HashMap<>();
+
+    // Start a new file on out: clears the string table and writes the header.
+    // The record buffer is kept, so one writer can be reused across saves.
+    public void reset(OutputStream out) throws IOException {
+        this.out = out;
+        stringTable.clear();
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    public void beginRecord() {
+        length = 0;
+    }
+
+    // Emit the buffered record with its length prefix
+    public void endRecord() throws IOException {
+        int prefixLength = 0;
+        int value = length;
+        while ((value & ~0x7F) != 0) {
+            prefix[prefixLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        prefix[prefixLength++] = (byte) value;
+        out.write(prefix, 0, prefixLength);
+        out.write(buffer, 0, length);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public BinaryWriter beginArray() {
+        writeByte(TAG_BEGIN_ARRAY);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter endArray() {
+        writeByte(TAG_END_ARRAY);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter beginObject() {
+        writeByte(TAG_BEGIN_OBJECT);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter endObject() {
+        writeByte(TAG_END_OBJECT);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter name(String name) {
+        writeString(name);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter value(String value) {
+        if (value == null) {
+            writeByte(TAG_NULL);
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryWriter value(long value) {
+        writeByte(TAG_INT);
+        writeVarLong((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    @Override
+    public BinaryWriter value(double value) {
+        writeByte(TAG_DOUBLE);
+        long bits = Double.doubleToLongBits(value);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (bits >>> shift);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryWriter value(boolean value) {
+        writeByte(value ? TAG_TRUE : TAG_FALSE);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter nullValue() {
+        writeByte(TAG_NULL);
+        return this;
+    }
+
+    private void writeString(String s) {
+        if (s.length() > MAX_TABLE_STRING_LENGTH) {
+            writeByte(TAG_STRING_RAW);
+            writeUtf8(s);
+            return;
+        }
+        Integer index = stringTable.get(s);
+        if (index != null) {
+            writeByte(TAG_STRING_REF);
+            writeVarLong(index);
+        } else {
+            stringTable.put(s, stringTable.size());
+            writeByte(TAG_STRING_NEW);
+            writeUtf8(s);
+        }
+    }
+
+    private void writeUtf8(String s) {
+        int count = s.length();
+        boolean ascii = true;
+        for (int i = 0; i < count; i++) {
+            if (s.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            writeVarLong(count);
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                buffer[length++] = (byte) s.charAt(i);
+            }
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
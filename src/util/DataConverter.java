@@ -0,0 +1,77 @@
+package util;
+
+import model.*;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One-off converter between the JSON and binary storage formats.
+//
+// Usage:  java -cp bin util.DataConverter to-binary
+//         java -cp bin util.DataConverter to-json
+//
+// Flight shards (data/flights/<id>, see -Dflights.sharded) are converted along with the
+// top-level files. Source files are left in place; delete them once the converted data has been checked,
+// since a file in the configured format is always preferred over the other one.
+public class DataConverter {
+
+    private static final Map<String, Class<?>> DATA_FILES = new LinkedHashMap<>();
+    // Seat lists of the sharded flights layout, one file per flight
+    private static final String SHARD_DIR = "flights/";
+
+    static {
+        DATA_FILES.put("flights.json", Flight.class);
+        DATA_FILES.put("routes.json", Route.class);
+        DATA_FILES.put("aircrafts.json", Aircraft.class);
+        DATA_FILES.put("gates.json", Gate.class);
+        DATA_FILES.put("terminals.json", Terminal.class);
+        DATA_FILES.put("customers.json", Customer.class);
+        DATA_FILES.put("admins.json", Admin.class);
+        DATA_FILES.put("tickets.json", Ticket.class);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1 || !(args[0].equals("to-binary") || args[0].equals("to-json"))) {
+            System.err.println("Usage: java util.DataConverter to-binary|to-json");
+            System.exit(1);
+        }
+
+        StorageFormat target = args[0].equals("to-binary") ? StorageFormat.BINARY : StorageFormat.JSON;
+        int converted = convertAll(target.other(), target);
+        System.out.println("Converted " + converted + " data file(s) to " + target);
+    }
+
+    // Convert every data file present in the source format; returns the number converted
+    public static int convertAll(StorageFormat source, StorageFormat target) {
+        int converted = 0;
+        for (Map.Entry<String, Class<?>> entry : DATA_FILES.entrySet()) {
+            if (convert(entry.getKey(), entry.getValue(), source, target)) {
+                converted++;
+            }
+        }
+        File[] shards = new File("data/" + SHARD_DIR).listFiles((dir, name) -> name.endsWith(source.getExtension()));
+        if (shards != null) {
+            for (File shard : shards) {
+                String fileName = SHARD_DIR + StorageFormat.JSON.fileName(shard.getName());
+                if (convert(fileName, FlightSeat.class, source, target)) {
+                    converted++;
+                }
+            }
+        }
+        return converted;
+    }
+
+    private static <T> boolean convert(String fileName, Class<T> clazz, StorageFormat source, StorageFormat target) {
+        if (!new File("data/" + source.fileName(fileName)).exists()) {
+            return false;
+        }
+        List<T> items = JsonUtil.loadFromFile(fileName, clazz, source);
+        if (!JsonUtil.saveToFile(items, fileName, target)) {
+            return false;
+        }
+        System.out.println(source.fileName(fileName) + " -> " + target.fileName(fileName) + " (" + items.size() + " records)");
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package util;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Watches data/ and data/journal/ for changes made by other app instances or external
+// tools, and tells listeners which data files were touched. Events are collected until
+// the directory has been quiet for the debounce period (or at most MAX_DELAY_MILLIS), so
+// a save - temp file, rename, journal compaction - turns into a single notification.
+// Listeners run on the watcher thread, never on the EDT.
+//
+// Events caused by this process's own writes are reported too; services check
+// DataVersions before re-reading anything, so those cost only a few file stats.
+public class DataDirectoryWatcher {
+
+    // Receives the names of the data files (e.g. "flights.json") that changed. An empty
+    // set means events were lost and any file may have changed.
+    public interface Listener {
+        void dataFilesChanged(Set<String> fileNames);
+    }
+
+    private static final String DATA_DIR = "data";
+    private static final String JOURNAL_DIR = "journal";
+    private static final long MAX_DELAY_MILLIS = 1000;
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("data.watch"));
+    private static final long DEBOUNCE_MILLIS = Long.getLong("data.watchDebounceMs", 100L);
+
+    // Weakly held, so a discarded service (e.g. one created for a single dialog) stops
+    // receiving notifications once it is collected
+    private static final List<WeakReference<Listener>> LISTENERS = new CopyOnWriteArrayList<>();
+    private static Thread thread;
+
+    private DataDirectoryWatcher() {
+    }
+
+    // False with -Ddata.watch=false; views then check for changes themselves
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    // Register a listener and start watching if this is the first one. The caller must
+    // keep a strong reference to the listener for as long as it wants notifications.
+    public static void addListener(Listener listener) {
+        if (!ENABLED) {
+            return;
+        }
+        LISTENERS.add(new WeakReference<>(listener));
+        start();
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.removeIf(ref -> ref.get() == null || ref.get() == listener);
+    }
+
+    private static synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(DataDirectoryWatcher::watch, "data-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void watch() {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Path dataDir = Paths.get(DATA_DIR);
+            Path journalDir = dataDir.resolve(JOURNAL_DIR);
+            Files.createDirectories(journalDir);
+
+            Map<WatchKey, Path> directories = new HashMap<>();
+            directories.put(register(watchService, dataDir), dataDir);
+            directories.put(register(watchService, journalDir), journalDir);
+
+            Set<String> changed = new HashSet<>();
+            boolean overflow = false;
+            long firstEvent = 0;
+            while (!directories.isEmpty()) {
+                WatchKey key;
+                if (changed.isEmpty() && !overflow) {
+                    key = watchService.take();
+                } else {
+                    long wait = Math.min(DEBOUNCE_MILLIS, firstEvent + MAX_DELAY_MILLIS - System.currentTimeMillis());
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (key == null) {
+                    // Quiet period over
+                    notifyListeners(overflow ? Collections.emptySet() : changed);
+                    changed = new HashSet<>();
+                    overflow = false;
+                    continue;
+                }
+
+                boolean hadEvents = !changed.isEmpty() || overflow;
+                Path directory = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (directory != null) {
+                        String fileName = dataFileName(directory.equals(journalDir), event.context().toString());
+                        if (fileName != null) {
+                            changed.add(fileName);
+                        }
+                    }
+                }
+                if (!hadEvents && (!changed.isEmpty() || overflow)) {
+                    firstEvent = System.currentTimeMillis();
+                }
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error watching data directory: " + e.getMessage());
+        }
+    }
+
+    private static WatchKey register(WatchService watchService, Path directory) throws IOException {
+        return directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    // Data file a changed path belongs to: "x.json" for data/x.json, data/x.bin and
+    // data/journal/x.json.log; null for temp files and anything else
+    static String dataFileName(boolean inJournalDir, String name) {
+        if (inJournalDir) {
+            return name.endsWith(".json.log") ? name.substring(0, name.length() - ".log".length()) : null;
+        }
+        if (name.endsWith(".json")) {
+            return name;
+        }
+        if (name.endsWith(".bin")) {
+            return name.substring(0, name.length() - ".bin".length()) + ".json";
+        }
+        return null;
+    }
+
+    private static void notifyListeners(Set<String> fileNames) {
+        Set<String> names = Collections.unmodifiableSet(fileNames);
+        for (WeakReference<Listener> ref : LISTENERS) {
+            Listener listener = ref.get();
+            if (listener == null) {
+                LISTENERS.remove(ref);
+                continue;
+            }
+            try {
+                listener.dataFilesChanged(names);
+            } catch (RuntimeException e) {
+                System.err.println("Error reloading changed data files: " + e.getMessage());
+            }
+        }
+    }
+}
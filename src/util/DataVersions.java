@@ -0,0 +1,150 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Change detection for data files, so services can skip re-parsing files that did not
+// change since they loaded them.
+//
+// A Version combines an in-process generation, bumped by every change made through a
+// service, with a stamp of the file and its journal on disk (size and modification time).
+// Writes made by this process record the stamp they leave behind, so only a stamp that
+// differs from both what a service loaded and what this process last wrote counts as an
+// outside change. Several own writes to one file (a journal append while the snapshot is
+// being written) may overlap; while any is in progress the file counts as unchanged.
+public class DataVersions {
+
+    // What a service's in-memory copy of a data file corresponds to
+    public static final class Version {
+        private final long generation;
+        private final Stamp stamp;
+
+        private Version(long generation, Stamp stamp) {
+            this.generation = generation;
+            this.stamp = stamp;
+        }
+    }
+
+    private static final class Stamp {
+        private final long dataSize;
+        private final long dataModified;
+        private final long journalSize;
+        private final long journalModified;
+
+        private Stamp(long dataSize, long dataModified, long journalSize, long journalModified) {
+            this.dataSize = dataSize;
+            this.dataModified = dataModified;
+            this.journalSize = journalSize;
+            this.journalModified = journalModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stamp)) return false;
+            Stamp other = (Stamp) o;
+            return dataSize == other.dataSize && dataModified == other.dataModified
+                    && journalSize == other.journalSize && journalModified == other.journalModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dataSize, dataModified, journalSize, journalModified);
+        }
+    }
+
+    private static final class FileState {
+        private final AtomicLong generation = new AtomicLong();
+        private volatile Stamp lastOwnStamp;
+        private volatile int ownWrites; // in progress, guarded by the FileState
+    }
+
+    private static final Map<String, FileState> FILES = new ConcurrentHashMap<>();
+
+    private DataVersions() {
+    }
+
+    // Version of the file as it is now; take it before loading the file
+    public static Version current(String fileName) {
+        FileState state = state(fileName);
+        Stamp stamp = stamp(fileName);
+        if (state.lastOwnStamp == null) {
+            state.lastOwnStamp = stamp;
+        }
+        return new Version(state.generation.get(), stamp);
+    }
+
+    // True if a copy loaded at seen is still up to date
+    public static boolean isCurrent(String fileName, Version seen) {
+        if (seen == null) {
+            return false;
+        }
+        FileState state = state(fileName);
+        if (state.generation.get() != seen.generation) {
+            return false;
+        }
+        Stamp stamp = stamp(fileName);
+        return stamp.equals(seen.stamp) || stamp.equals(state.lastOwnStamp) || state.ownWrites > 0;
+    }
+
+    // Record a change made to a loaded copy. Returns the version that copy is now at: the
+    // new generation if the copy was current, otherwise seen, so it still gets reloaded.
+    public static Version changed(String fileName, Version seen) {
+        FileState state = state(fileName);
+        long generation = state.generation.incrementAndGet();
+        if (seen != null && seen.generation == generation - 1) {
+            return new Version(generation, seen.stamp);
+        }
+        return seen;
+    }
+
+    // Call before this process writes the data file or its journal. A stamp that is not
+    // the one this process left means someone else changed the file, which invalidates
+    // every loaded copy.
+    static void beforeWrite(String fileName) {
+        FileState state = state(fileName);
+        synchronized (state) {
+            Stamp last = state.lastOwnStamp;
+            if (state.ownWrites++ == 0 && last != null && !last.equals(stamp(fileName))) {
+                state.generation.incrementAndGet();
+            }
+        }
+    }
+
+    static void afterWrite(String fileName) {
+        FileState state = state(fileName);
+        synchronized (state) {
+            state.ownWrites--;
+            state.lastOwnStamp = stamp(fileName);
+        }
+    }
+
+    private static FileState state(String fileName) {
+        return FILES.computeIfAbsent(fileName, name -> new FileState());
+    }
+
+    private static Stamp stamp(String fileName) {
+        long[] data = attributes(JsonUtil.dataFile(fileName));
+        long[] journal = attributes(Journal.fileFor(fileName));
+        return new Stamp(data[0], data[1], journal[0], journal[1]);
+    }
+
+    // Size and modification time in nanoseconds, or -1s for a missing file
+    private static long[] attributes(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new long[] { attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) };
+        } catch (NoSuchFileException e) {
+            return new long[] { -1, -1 };
+        } catch (IOException e) {
+            return new long[] { -2, System.nanoTime() }; // unreadable: never matches
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// Unique ids from numbered sequences, e.g. PNRs and ticket ids. A sequence reserves a
+// range of numbers in data/ids.properties before any of them is used, so no number is
+// handed out twice across restarts (the unused rest of a range is skipped). Each thread
+// takes a small sub-block of the current range with one atomic add and allocates from it
+// without any lock, so parallel bookings do not contend. The next range is reserved in
+// the background once half of the current one is handed out, which keeps the file write
+// off the booking threads; only the first id of a process waits for it. A number becomes
+// an id through a fixed permutation of the id space, so consecutive ids do not look
+// consecutive, and ids the caller reports as in use (e.g. by data from before the
+// allocator) are skipped.
+public final class IdAllocator {
+
+    public static final String LETTERS_AND_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    public static final String HEX_DIGITS = "0123456789ABCDEF";
+
+    private static final File FILE = new File("data/ids.properties");
+    private static final int BLOCK_SIZE = Math.max(1, Integer.getInteger("ids.blockSize", 1000));
+    private static final int THREAD_BLOCK_SIZE = Math.max(1, Integer.getInteger("ids.threadBlockSize", 16));
+
+    // Guarded by SEQUENCES, like the reservations
+    private static final Map<String, IdAllocator> SEQUENCES = new HashMap<>();
+    // First unreserved number of each sequence
+    private static final Map<String, Long> reserved = new HashMap<>();
+
+    private final String name;
+    private final String prefix;
+    private final String alphabet;
+    private final int length;
+    private final long space;
+    private final long multiplier;
+    private final long offset;
+    // Range sub-blocks are taken from, and the one reserved to follow it (guarded by this)
+    private volatile Range current;
+    private volatile Range ahead;
+    private final AtomicBoolean reservingAhead = new AtomicBoolean();
+    // Next number and end of the calling thread's sub-block
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+
+    private IdAllocator(String name, String prefix, String alphabet, int length) {
+        this.name = name;
+        this.prefix = prefix;
+        this.alphabet = alphabet;
+        this.length = length;
+        long size = 1;
+        for (int i = 0; i < length; i++) {
+            size *= alphabet.length();
+            if (size > 1L << 32) {
+                throw new IllegalArgumentException("Id space of " + name + " is too large");
+            }
+        }
+        this.space = size;
+        // Any multiplier coprime to the size of the space permutes it
+        long m = (long) (size * 0.6180339887) | 1;
+        while (gcd(m, size) != 1) {
+            m += 2;
+        }
+        this.multiplier = m % size;
+        this.offset = Math.floorMod(name.hashCode(), size);
+    }
+
+    // Reserved numbers [start, end); sub-blocks are taken from next
+    private static final class Range {
+        final AtomicLong next;
+        final long end;
+        final long reserveAheadAt;
+
+        Range(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.reserveAheadAt = start + (end - start) / 2;
+        }
+    }
+
+    // Ids of prefix followed by length characters of alphabet; one allocator per name
+    public static IdAllocator forSequence(String name, String prefix, String alphabet, int length) {
+        synchronized (SEQUENCES) {
+            return SEQUENCES.computeIfAbsent(name, n -> new IdAllocator(n, prefix, alphabet, length));
+        }
+    }
+
+    // A fresh id, skipping any that inUse accepts
+    public String next(Predicate<String> inUse) {
+        long[] block = blocks.get();
+        while (true) {
+            if (block[0] == block[1]) {
+                takeBlock(block);
+            }
+            String id = format(block[0]++);
+            if (inUse == null || !inUse.test(id)) {
+                return id;
+            }
+        }
+    }
+
+    // Give the calling thread the next sub-block of the current range
+    private void takeBlock(long[] block) {
+        while (true) {
+            Range range = current;
+            if (range != null) {
+                long start = range.next.getAndAdd(THREAD_BLOCK_SIZE);
+                if (start < range.end) {
+                    if (start >= range.reserveAheadAt && ahead == null) {
+                        reserveAhead();
+                    }
+                    block[0] = start;
+                    block[1] = Math.min(range.end, start + THREAD_BLOCK_SIZE);
+                    return;
+                }
+            }
+            advance(range);
+        }
+    }
+
+    // Move on from a used up range to the one reserved ahead. Reserves it here only for
+    // the first range, or if the background reservation has not completed (or failed).
+    private synchronized void advance(Range usedUp) {
+        if (current != usedUp) {
+            return; // another thread advanced already
+        }
+        Range next = ahead;
+        ahead = null;
+        current = next != null ? next : reserve();
+    }
+
+    // Reserve the range after the current one on a thread of its own
+    private void reserveAhead() {
+        if (!reservingAhead.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                Range range = reserve();
+                synchronized (this) {
+                    if (ahead == null) {
+                        ahead = range;
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error reserving " + name + " ids: " + e.getMessage());
+            } finally {
+                reservingAhead.set(false);
+            }
+        }, "id-reserve");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Range reserve() {
+        synchronized (SEQUENCES) {
+            // The file may be ahead of this process if another one shares the data directory
+            long start = Math.max(reserved.getOrDefault(name, 0L), readReserved(name));
+            if (start >= space) {
+                throw new IllegalStateException("No " + name + " ids left");
+            }
+            long end = Math.min(space, start + BLOCK_SIZE);
+            reserved.put(name, end);
+            // If the write fails the range is still used: callers check ids against their
+            // data, and the next reservation tries to write again
+            AtomicFile.forFile(FILE).commit(out -> {
+                Properties properties = new Properties();
+                for (Map.Entry<String, Long> entry : reserved.entrySet()) {
+                    properties.setProperty(entry.getKey(), Long.toString(entry.getValue()));
+                }
+                properties.store(out, "First unreserved number of each id sequence");
+            });
+            return new Range(start, end);
+        }
+    }
+
+    private static long readReserved(String name) {
+        if (!FILE.exists()) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(FILE)) {
+            properties.load(in);
+            return Long.parseLong(properties.getProperty(name, "0").trim());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading " + FILE.getName() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private String format(long number) {
+        // number and multiplier are below 2^32, so the product fits 64 unsigned bits
+        long value = (Long.remainderUnsigned(number * multiplier, space) + offset) % space;
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = alphabet.charAt((int) (value % alphabet.length()));
+            value /= alphabet.length();
+        }
+        return prefix + new String(chars);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,325 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log for one data file. Services append one small record per
+// mutation instead of rewriting the whole JSON file; the JSON file acts as the snapshot
+// and the journal is replayed on top of it at load time. Once the owning service has
+// written a fresh snapshot it calls reset() to compact the journal.
+//
+// Record format, one per line:  <crc32 hex> TAB <op> TAB <key> TAB <compact json payload>
+public class Journal {
+
+    public enum SyncPolicy {
+        ALWAYS,   // fsync after every record
+        INTERVAL, // fsync at most once per sync interval
+        NEVER     // leave flushing to the operating system
+    }
+
+    // One replayed record
+    public static class Entry {
+        private final String op;
+        private final String key;
+        private final String payload;
+
+        Entry(String op, String key, String payload) {
+            this.op = op;
+            this.key = key;
+            this.payload = payload;
+        }
+
+        public String getOp() { return op; }
+        public String getKey() { return key; }
+        public String getPayload() { return payload; }
+    }
+
+    private static final String JOURNAL_DIR = "data/journal/";
+    private static final Map<String, Journal> JOURNALS = new HashMap<>();
+
+    private static volatile SyncPolicy syncPolicy = parsePolicy(System.getProperty("journal.sync"));
+    private static volatile long syncIntervalMillis = Long.getLong("journal.syncIntervalMs", 1000L);
+    private static volatile int compactThreshold = Integer.getInteger("journal.compactThreshold", 1000);
+
+    private final String fileName;
+    private final File file;
+    private FileChannel channel;
+    private int recordCount;
+    // Bytes dropped from the front of the journal so far. Marks count them too, so a mark
+    // stays valid when records before it are discarded by an earlier snapshot's write.
+    private long discardedBytes;
+    private long lastSync;
+
+    private Journal(String fileName) {
+        this.fileName = fileName;
+        this.file = fileFor(fileName);
+    }
+    
+    // Log file of the journal for a data file
+    public static File fileFor(String fileName) {
+        return new File(JOURNAL_DIR + fileName + ".log");
+    }
+
+    // Shared journal for a data file, so every service instance appends to the same log
+    public static synchronized Journal forFile(String fileName) {
+        return JOURNALS.computeIfAbsent(fileName, Journal::new);
+    }
+
+    public static void setSyncPolicy(SyncPolicy policy) {
+        syncPolicy = policy;
+    }
+
+    public static SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public static void setSyncIntervalMillis(long millis) {
+        syncIntervalMillis = millis;
+    }
+
+    // Number of records after which owners should write a snapshot and reset()
+    public static void setCompactThreshold(int records) {
+        compactThreshold = records;
+    }
+
+    // Append one record. Returns false if it could not be written, in which case the
+    // caller should fall back to saving the full file.
+    public synchronized boolean append(String op, String key, String payload) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length() + 32);
+        encode(record, op, key, payload);
+        return write(record, 1);
+    }
+
+    // Append one record per key with a single write (and sync), e.g. for a batch of
+    // changes committed together. Returns false like append.
+    public synchronized boolean appendAll(String op, Map<String, String> payloadsByKey) {
+        if (payloadsByKey.isEmpty()) {
+            return true;
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : payloadsByKey.entrySet()) {
+            encode(records, op, entry.getKey(), entry.getValue());
+        }
+        return write(records, payloadsByKey.size());
+    }
+
+    private static void encode(ByteArrayOutputStream out, String op, String key, String payload) {
+        String body = op + '\t' + (key != null ? key : "") + '\t' + payload;
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bodyBytes);
+
+        byte[] crcBytes = Long.toHexString(crc.getValue()).getBytes(StandardCharsets.US_ASCII);
+        out.write(crcBytes, 0, crcBytes.length);
+        out.write('\t');
+        out.write(bodyBytes, 0, bodyBytes.length);
+        out.write('\n');
+    }
+
+    private boolean write(ByteArrayOutputStream records, int count) {
+        DataVersions.beforeWrite(fileName);
+        try {
+            FileChannel ch = channel();
+            ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            sync(ch);
+            recordCount += count;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error appending to journal " + file.getName() + ": " + e.getMessage());
+            return false;
+        } finally {
+            DataVersions.afterWrite(fileName);
+        }
+    }
+
+    // Read all intact records. A torn or corrupt tail (e.g. from a crash mid-append)
+    // ends the replay and is cut off so later appends start on a clean line.
+    public synchronized List<Entry> readEntries() {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.exists()) {
+            recordCount = 0;
+            return entries;
+        }
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            System.err.println("Error reading journal " + file.getName() + ": " + e.getMessage());
+            return entries;
+        }
+
+        int validLength = 0;
+        int start = 0;
+        while (start < data.length) {
+            int end = start;
+            while (end < data.length && data[end] != '\n') end++;
+            if (end == data.length) break; // unterminated last line
+
+            Entry entry = parseLine(new String(data, start, end - start, StandardCharsets.UTF_8));
+            if (entry == null) break;
+            entries.add(entry);
+            start = end + 1;
+            validLength = start;
+        }
+
+        if (validLength < data.length) {
+            System.err.println("Discarding " + (data.length - validLength) + " corrupt bytes at end of journal " + file.getName());
+            try {
+                channel().truncate(validLength);
+            } catch (IOException e) {
+                System.err.println("Error truncating journal " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        recordCount = entries.size();
+        return entries;
+    }
+
+    // Discard all records; call only after the snapshot they describe was saved
+    public synchronized void reset() {
+        if (!file.exists() && channel == null) {
+            recordCount = 0;
+            return;
+        }
+        DataVersions.beforeWrite(fileName);
+        try {
+            FileChannel ch = channel();
+            long size = ch.size();
+            ch.truncate(0);
+            discardedBytes += size;
+            ch.force(true);
+            recordCount = 0;
+        } catch (IOException e) {
+            System.err.println("Error resetting journal " + file.getName() + ": " + e.getMessage());
+        } finally {
+            DataVersions.afterWrite(fileName);
+        }
+    }
+
+    // Current end of the journal. A snapshot taken together with a mark covers every
+    // record before it, so those records can be dropped with discardUpTo(mark) once the
+    // snapshot has been written, even if more records were appended in the meantime.
+    public synchronized long mark() {
+        return discardedBytes + length();
+    }
+
+    // Drop the records before mark and keep any appended after it
+    public synchronized void discardUpTo(long mark) {
+        long length = length();
+        long cut = mark - discardedBytes;
+        if (cut >= length) {
+            reset();
+            return;
+        }
+        if (cut <= 0) {
+            return;
+        }
+        DataVersions.beforeWrite(fileName);
+        try {
+            FileChannel ch = channel();
+            ByteBuffer tail = ByteBuffer.allocate((int) (length - cut));
+            while (tail.hasRemaining() && ch.read(tail, cut + tail.position()) >= 0) {
+                // keep reading until the tail is complete
+            }
+            tail.flip();
+            int remaining = 0;
+            for (int i = 0; i < tail.limit(); i++) {
+                if (tail.get(i) == '\n') remaining++;
+            }
+
+            // Replace the file atomically, then reopen so appends go to the new file
+            byte[] bytes = new byte[tail.limit()];
+            tail.get(bytes);
+            ch.close();
+            channel = null;
+            AtomicFile.replace(file, out -> out.write(bytes));
+            discardedBytes += cut;
+            recordCount = remaining;
+        } catch (IOException e) {
+            System.err.println("Error compacting journal " + file.getName() + ": " + e.getMessage());
+        } finally {
+            DataVersions.afterWrite(fileName);
+        }
+    }
+
+    private long length() {
+        try {
+            return channel != null && channel.isOpen() ? channel.size() : file.length();
+        } catch (IOException e) {
+            return file.length();
+        }
+    }
+
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    public synchronized boolean needsCompaction() {
+        return recordCount >= compactThreshold;
+    }
+
+    private Entry parseLine(String line) {
+        int crcEnd = line.indexOf('\t');
+        int opEnd = crcEnd < 0 ? -1 : line.indexOf('\t', crcEnd + 1);
+        int keyEnd = opEnd < 0 ? -1 : line.indexOf('\t', opEnd + 1);
+        if (keyEnd < 0) return null;
+
+        String body = line.substring(crcEnd + 1);
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        if (!Long.toHexString(crc.getValue()).equals(line.substring(0, crcEnd))) {
+            return null;
+        }
+        return new Entry(line.substring(crcEnd + 1, opEnd), line.substring(opEnd + 1, keyEnd), line.substring(keyEnd + 1));
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            file.getParentFile().mkdirs();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    private void sync(FileChannel ch) throws IOException {
+        switch (syncPolicy) {
+            case ALWAYS:
+                ch.force(false);
+                break;
+            case INTERVAL:
+                long now = System.currentTimeMillis();
+                if (now - lastSync >= syncIntervalMillis) {
+                    ch.force(false);
+                    lastSync = now;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static SyncPolicy parsePolicy(String value) {
+        if (value == null) return SyncPolicy.ALWAYS;
+        try {
+            return SyncPolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown journal sync policy " + value + ", using ALWAYS");
+            return SyncPolicy.ALWAYS;
+        }
+    }
+}
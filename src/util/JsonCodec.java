@@ -0,0 +1,11 @@
+package util;
+
+import java.io.IOException;
+
+// Direct read/write of one model type, used by JsonUtil instead of reflection for
+// both the JSON and binary storage formats
+public interface JsonCodec<T> {
+    void write(ValueWriter out, T value) throws IOException;
+
+    T read(ValueReader in) throws IOException;
+}
@@ -0,0 +1,326 @@
+package util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Single-pass pull parser over a Reader. Never holds more than one buffer of
+// the document in memory; string values are decoded into a reused builder.
+public class JsonReader implements ValueReader, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // Nesting scopes
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private int line = 1;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    private Token peeked;
+    private final StringBuilder text = new StringBuilder(64);
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = advance();
+        }
+        return peeked;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return text.toString();
+    }
+
+    // Returns strings, numbers and booleans as text (lenient, like the old parser)
+    @Override
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN) {
+            throw syntaxError("Expected a string but was " + token);
+        }
+        peeked = null;
+        return text.toString();
+    }
+
+    // Like nextString() but also accepts null
+    @Override
+    public String nextStringOrNull() throws IOException {
+        if (peek() == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        return nextString();
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        return Integer.parseInt(nextString().trim());
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        return Long.parseLong(nextString().trim());
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        return Double.parseDouble(nextString().trim());
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        return Boolean.parseBoolean(nextString().trim());
+    }
+
+    // Skips the next value, including any nested arrays/objects
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_ARRAY: beginArray(); depth++; break;
+                case BEGIN_OBJECT: beginObject(); depth++; break;
+                case END_ARRAY: endArray(); depth--; break;
+                case END_OBJECT: endObject(); depth--; break;
+                case END_DOCUMENT: throw syntaxError("Unexpected end of document");
+                default: peeked = null; break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private Token advance() throws IOException {
+        int scope = stack[stackSize - 1];
+        int c;
+
+        if (scope == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            c = nextNonWhitespace();
+            if (c == ']') return Token.END_ARRAY;
+            if (c != ',') throw syntaxError("Unterminated array");
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            c = nextNonWhitespace();
+            if (scope == NONEMPTY_OBJECT) {
+                if (c == '}') return Token.END_OBJECT;
+                if (c != ',') throw syntaxError("Unterminated object");
+                c = nextNonWhitespace();
+            } else if (c == '}') {
+                return Token.END_OBJECT;
+            }
+            if (c != '"') throw syntaxError("Expected name");
+            readString();
+            if (nextNonWhitespace() != ':') throw syntaxError("Expected ':'");
+            return Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            return nextNonWhitespace() == -1 ? Token.END_DOCUMENT : failTrailing();
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                if (scope == EMPTY_DOCUMENT) return Token.END_DOCUMENT;
+                throw syntaxError("Unexpected end of document");
+            case ']':
+                if (scope == EMPTY_ARRAY) return Token.END_ARRAY;
+                throw syntaxError("Unexpected ']'");
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '"':
+                readString();
+                return Token.STRING;
+            default:
+                pos--;
+                return readLiteral();
+        }
+    }
+
+    private Token failTrailing() throws IOException {
+        throw syntaxError("Trailing content after document");
+    }
+
+    private Token readLiteral() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) break;
+            char c = buffer[pos];
+            if (c == ',' || c == ']' || c == '}' || c == ':' || Character.isWhitespace(c)) break;
+            text.append(c);
+            pos++;
+        }
+        if (text.length() == 0) throw syntaxError("Expected a value");
+
+        if (matches("null")) return Token.NULL;
+        if (matches("true") || matches("false")) return Token.BOOLEAN;
+        char first = text.charAt(0);
+        if (first == '-' || (first >= '0' && first <= '9')) return Token.NUMBER;
+        throw syntaxError("Unexpected value '" + text + "'");
+    }
+
+    private boolean matches(String literal) {
+        if (text.length() != literal.length()) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (text.charAt(i) != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Reads a quoted string (opening quote already consumed) into 'text'
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    text.append(buffer, start, pos - start - 1);
+                    return;
+                } else if (c == '\\') {
+                    text.append(buffer, start, pos - start - 1);
+                    text.append(readEscape());
+                    start = pos;
+                } else if (c == '\n') {
+                    line++;
+                }
+            }
+            text.append(buffer, start, pos - start);
+            if (!fill()) throw syntaxError("Unterminated string");
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (pos == limit && !fill()) throw syntaxError("Unterminated escape sequence");
+        char escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill()) throw syntaxError("Unterminated escape sequence");
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit < 0) throw syntaxError("Invalid unicode escape");
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+            default:
+                throw syntaxError("Invalid escape sequence '\\" + escaped + "'");
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) return -1;
+            char c = buffer[pos++];
+            if (c == '\n') {
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != '\uFEFF') {
+                return c;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at line " + line);
+    }
+}
@@ -2,7 +2,12 @@ package util;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -10,73 +15,194 @@ public class JsonUtil {
     
     private static final String DATA_DIR = "data/";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final Map<Class<?>, Map<String, Field>> FIELD_CACHE = new ConcurrentHashMap<>();
+    private static final ThreadLocal<JsonWriter> PRETTY_WRITER = ThreadLocal.withInitial(() -> new JsonWriter(null, true));
+    private static final ThreadLocal<JsonWriter> COMPACT_WRITER = ThreadLocal.withInitial(() -> new JsonWriter(null, false));
+    private static final ThreadLocal<BinaryWriter> BINARY_WRITER = ThreadLocal.withInitial(BinaryWriter::new);
+    private static volatile boolean prettyPrint = !Boolean.getBoolean("json.compact");
+    private static volatile StorageFormat storageFormat = StorageFormat.fromSystemProperty();
     
-    // Save list to JSON format
-    public static <T> void saveToFile(List<T> list, String fileName) {
+    // Save list in the configured storage format. The file is replaced atomically and saves
+    // of the same file that arrive together are written once. Returns false if the write failed.
+    public static <T> boolean saveToFile(List<T> list, String fileName) {
+        return saveToFile(list, fileName, storageFormat);
+    }
+    
+    public static <T> boolean saveToFile(List<T> list, String fileName, StorageFormat format) {
+        return saveToFile(list, fileName, format, null);
+    }
+    
+    // Save list writing every element with codec instead of the codec registered for its class
+    public static <T> boolean saveToFile(List<T> list, String fileName, JsonCodec<? super T> codec) {
+        return saveToFile(list, fileName, storageFormat, codec);
+    }
+    
+    private static <T> boolean saveToFile(List<T> list, String fileName, StorageFormat format, JsonCodec<? super T> codec) {
+        DataVersions.beforeWrite(fileName);
         try {
-            // Ensure .json extension
-            if (!fileName.endsWith(".json")) {
-                fileName = fileName.replace(".dat", ".json");
-            }
-            
-            File file = new File(DATA_DIR + fileName);
-            file.getParentFile().mkdirs();
-            
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("[");
-                for (int i = 0; i < list.size(); i++) {
-                    writer.print(objectToJson(list.get(i), 1));
-                    if (i < list.size() - 1) {
-                        writer.println(",");
-                    } else {
-                        writer.println();
-                    }
+            return writeToFile(list, fileName, format, codec);
+        } finally {
+            DataVersions.afterWrite(fileName);
+        }
+    }
+    
+    private static <T> boolean writeToFile(List<T> list, String fileName, StorageFormat format, JsonCodec<? super T> codec) {
+        File file = new File(DATA_DIR + format.fileName(jsonFileName(fileName)));
+        
+        // Snapshot the list so a later caller can take over writing it
+        List<T> snapshot = new ArrayList<>(list);
+        if (format == StorageFormat.BINARY) {
+            return AtomicFile.forFile(file).commit(out -> {
+                BinaryWriter writer = BINARY_WRITER.get();
+                writer.reset(out);
+                for (T item : snapshot) {
+                    writer.beginRecord();
+                    writeElement(writer, item, codec);
+                    writer.endRecord();
                 }
-                writer.println("]");
+                writer.flush();
+            });
+        }
+        return AtomicFile.forFile(file).commit(out -> {
+            Writer writer = new OutputStreamWriter(out);
+            JsonWriter json = writerFor(writer);
+            json.beginArray();
+            for (T item : snapshot) {
+                writeElement(json, item, codec);
             }
-        } catch (IOException e) {
-            System.err.println("Error saving to file " + fileName + ": " + e.getMessage());
+            json.endArray();
+            json.flush();
+        });
+    }
+    
+    private static <T> void writeElement(ValueWriter writer, T item, JsonCodec<? super T> codec) throws IOException {
+        if (codec != null && item != null) {
+            codec.write(writer, item);
+        } else {
+            writeValue(writer, item);
         }
     }
     
-    // Load list from JSON format (fallback to binary for existing files)
-    @SuppressWarnings("unchecked")
+    // Load list in the configured storage format, falling back to the other format's file
+    // if only that one exists (so switching formats picks up existing data)
     public static <T> List<T> loadFromFile(String fileName, Class<T> clazz) {
-        try {
-            // Ensure .json extension
-            if (!fileName.endsWith(".json")) {
-                fileName = fileName.replace(".dat", ".json");
+        fileName = jsonFileName(fileName);
+        StorageFormat format = storageFormat;
+        if (!new File(DATA_DIR + format.fileName(fileName)).exists()
+                && new File(DATA_DIR + format.other().fileName(fileName)).exists()) {
+            format = format.other();
+        }
+        return loadFromFile(fileName, clazz, format);
+    }
+    
+    // Load list from a file in the given format (JSON falls back to legacy serialized files)
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> loadFromFile(String fileName, Class<T> clazz, StorageFormat format) {
+        fileName = format.fileName(jsonFileName(fileName));
+        
+        File file = new File(DATA_DIR + fileName);
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        
+        List<T> result = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (format == StorageFormat.BINARY) {
+                BinaryReader reader = new BinaryReader(in);
+                while (reader.nextRecord()) {
+                    T obj = readObject(reader, clazz);
+                    if (obj != null) {
+                        result.add(obj);
+                    }
+                }
+                return result;
             }
             
-            File file = new File(DATA_DIR + fileName);
-            if (!file.exists()) {
-                return new ArrayList<>();
+            // Peek at the first non-blank byte to tell JSON from legacy binary files
+            int first = peekFirstNonBlank(in);
+            if (first == -1) {
+                return result;
             }
             
-            // Try to read as text first to check if it's JSON
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
+            if (first == '[') {
+                try (JsonReader reader = new JsonReader(new InputStreamReader(in))) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        T obj = readObject(reader, clazz);
+                        if (obj != null) {
+                            result.add(obj);
+                        }
+                    }
+                    reader.endArray();
                 }
-            }
-            
-            String jsonContent = content.toString().trim();
-            
-            // If it starts with '[' it's likely JSON, otherwise try binary fallback
-            if (jsonContent.startsWith("[")) {
-                return parseJsonArray(jsonContent, clazz);
             } else {
                 // Fallback to binary reading for existing files
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+                try (ObjectInputStream ois = new ObjectInputStream(in)) {
                     return (List<T>) ois.readObject();
                 }
             }
         } catch (IOException | ClassNotFoundException e) {
+            // Never the records parsed before the error: a later save would write them
+            // back over the whole file
             System.err.println("Error loading from file " + fileName + ": " + e.getMessage());
             return new ArrayList<>();
         }
+        return result;
+    }
+    
+    // The file a data file is loaded from: the configured format's, or the other format's
+    // if only that one exists
+    public static File dataFile(String fileName) {
+        fileName = jsonFileName(fileName);
+        File file = new File(DATA_DIR + storageFormat.fileName(fileName));
+        if (!file.exists()) {
+            File other = new File(DATA_DIR + storageFormat.other().fileName(fileName));
+            if (other.exists()) {
+                return other;
+            }
+        }
+        return file;
+    }
+    
+    // Size in bytes of a data file in whichever storage format exists (0 if none)
+    public static long dataFileSize(String fileName) {
+        File file = dataFile(fileName);
+        return file.exists() ? file.length() : 0;
+    }
+    
+    public static boolean dataFileExists(String fileName) {
+        return dataFileSize(fileName) > 0;
+    }
+    
+    // Delete a data file in both storage formats; returns false if one could not be deleted
+    public static boolean deleteDataFile(String fileName) {
+        fileName = jsonFileName(fileName);
+        boolean ok = true;
+        for (StorageFormat format : StorageFormat.values()) {
+            try {
+                Files.deleteIfExists(new File(DATA_DIR + format.fileName(fileName)).toPath());
+            } catch (IOException e) {
+                System.err.println("Error deleting file " + format.fileName(fileName) + ": " + e.getMessage());
+                ok = false;
+            }
+        }
+        return ok;
+    }
+    
+    public static void setStorageFormat(StorageFormat format) {
+        storageFormat = format;
+    }
+    
+    public static StorageFormat getStorageFormat() {
+        return storageFormat;
+    }
+    
+    // Ensure .json extension
+    private static String jsonFileName(String fileName) {
+        if (!fileName.endsWith(".json")) {
+            fileName = fileName.replace(".dat", ".json");
+        }
+        return fileName;
     }
     
     // Save single object to JSON format
@@ -87,48 +213,102 @@ public class JsonUtil {
                 fileName = fileName.replace(".dat", ".json");
             }
             
-            File file = new File(DATA_DIR + fileName);
-            file.getParentFile().mkdirs();
-            
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println(objectToJson(object, 0));
-            }
+            AtomicFile.replace(new File(DATA_DIR + fileName), out -> {
+                Writer writer = new OutputStreamWriter(out);
+                JsonWriter json = writerFor(writer);
+                writeValue(json, object);
+                json.flush();
+            });
         } catch (IOException e) {
             System.err.println("Error saving object to file " + fileName + ": " + e.getMessage());
         }
     }
     
+    // Compact JSON for a single value (object, list or scalar), e.g. a journal payload
+    public static String toJson(Object value) {
+        StringWriter out = new StringWriter();
+        try {
+            JsonWriter writer = COMPACT_WRITER.get();
+            writer.reset(out);
+            writeValue(writer, value);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not fail
+        }
+        return out.toString();
+    }
+    
+    // Parse a single JSON object produced by toJson()
+    public static <T> T fromJson(String json, Class<T> clazz) {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return readObject(reader, clazz);
+        } catch (IOException e) {
+            System.err.println("Error parsing JSON for " + clazz.getSimpleName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    // Parse a JSON array of objects produced by toJson()
+    public static <T> List<T> fromJsonList(String json, Class<T> clazz) {
+        List<T> result = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                T obj = readObject(reader, clazz);
+                if (obj != null) {
+                    result.add(obj);
+                }
+            }
+            reader.endArray();
+        } catch (IOException e) {
+            System.err.println("Error parsing JSON list for " + clazz.getSimpleName() + ": " + e.getMessage());
+        }
+        return result;
+    }
+    
+    // Switch between pretty-printed (default) and compact output
+    public static void setPrettyPrint(boolean enabled) {
+        prettyPrint = enabled;
+    }
+    
+    public static boolean isPrettyPrint() {
+        return prettyPrint;
+    }
+    
+    // Per-thread writer so its char buffer and indentation cache are reused across saves
+    private static JsonWriter writerFor(Writer out) {
+        ThreadLocal<JsonWriter> cache = prettyPrint ? PRETTY_WRITER : COMPACT_WRITER;
+        JsonWriter writer = cache.get();
+        writer.reset(out);
+        return writer;
+    }
+    
     // Load single object from JSON format (fallback to binary for existing files)
     @SuppressWarnings("unchecked")
     public static <T> T loadObject(String fileName, Class<T> clazz) {
-        try {
-            // Ensure .json extension
-            if (!fileName.endsWith(".json")) {
-                fileName = fileName.replace(".dat", ".json");
-            }
-            
-            File file = new File(DATA_DIR + fileName);
-            if (!file.exists()) {
+        // Ensure .json extension
+        if (!fileName.endsWith(".json")) {
+            fileName = fileName.replace(".dat", ".json");
+        }
+        
+        File file = new File(DATA_DIR + fileName);
+        if (!file.exists()) {
+            return null;
+        }
+        
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            int first = peekFirstNonBlank(in);
+            if (first == -1) {
                 return null;
             }
             
-            // Try to read as text first
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
+            if (first == '{') {
+                try (JsonReader reader = new JsonReader(new InputStreamReader(in))) {
+                    return readObject(reader, clazz);
                 }
-            }
-            
-            String jsonContent = content.toString().trim();
-            
-            // If it starts with '{' it's likely JSON, otherwise try binary fallback
-            if (jsonContent.startsWith("{")) {
-                return parseJsonObject(jsonContent, clazz);
             } else {
                 // Fallback to binary reading for existing files
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+                try (ObjectInputStream ois = new ObjectInputStream(in)) {
                     return (T) ois.readObject();
                 }
             }
@@ -138,35 +318,40 @@ public class JsonUtil {
         }
     }
     
-    // Convert object to JSON string
-    private static String objectToJson(Object obj, int indent) {
-        if (obj == null) return "null";
-        
-        StringBuilder json = new StringBuilder();
-        String indentStr = "  ".repeat(indent);
-        
-        json.append("{\n");
-        
-        // Get all fields including inherited fields
-        List<Field> allFields = getAllFields(obj.getClass());
-        boolean first = true;
+    // Returns the first non-whitespace byte without consuming anything (-1 if blank)
+    private static int peekFirstNonBlank(InputStream in) throws IOException {
+        in.mark(4096);
+        int b;
+        int count = 0;
+        do {
+            b = in.read();
+            count++;
+        } while (b != -1 && count < 4096 && (b == ' ' || b == '\n' || b == '\r' || b == '\t'));
+        in.reset();
+        return b;
+    }
+    
+    // Write an object through its codec, or reflectively (including inherited fields)
+    @SuppressWarnings("unchecked")
+    private static void writeObject(ValueWriter writer, Object obj) throws IOException {
+        JsonCodec<Object> codec = (JsonCodec<Object>) ModelCodecs.forClass(obj.getClass());
+        if (codec != null) {
+            codec.write(writer, obj);
+            return;
+        }
         
-        for (Field field : allFields) {
-            field.setAccessible(true);
+        writer.beginObject();
+        for (Field field : fieldsByName(obj.getClass()).values()) {
+            Object value;
             try {
-                Object value = field.get(obj);
-                if (!first) json.append(",\n");
-                first = false;
-                
-                json.append(indentStr).append("  \"").append(field.getName()).append("\": ");
-                json.append(valueToJson(value, indent + 1));
+                value = field.get(obj);
             } catch (IllegalAccessException e) {
-                // Skip this field
+                continue; // Skip this field
             }
+            writer.name(field.getName());
+            writeValue(writer, value);
         }
-        
-        json.append("\n").append(indentStr).append("}");
-        return json.toString();
+        writer.endObject();
     }
     
     // Get all fields including inherited fields
@@ -185,308 +370,182 @@ public class JsonUtil {
         return fields;
     }
     
-    // Convert value to JSON format
-    private static String valueToJson(Object value, int indent) {
-        if (value == null) return "null";
-        
-        if (value instanceof String) {
-            String str = value.toString();
-            str = str.replace("\\", "\\\\");  // Escape backslashes first
-            str = str.replace("\"", "\\\"");  // Then escape quotes
-            return "\"" + str + "\"";
-        } else if (value instanceof Number || value instanceof Boolean) {
-            return value.toString();
+    // Write a single value in JSON format
+    private static void writeValue(ValueWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof String) {
+            writer.value((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writer.value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            writer.value(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
         } else if (value instanceof LocalDateTime) {
-            return "\"" + ((LocalDateTime) value).format(DATE_FORMATTER) + "\"";
+            writer.value(((LocalDateTime) value).format(DATE_FORMATTER));
         } else if (value instanceof List) {
-            StringBuilder json = new StringBuilder();
-            List<?> list = (List<?>) value;
-            json.append("[\n");
-            for (int i = 0; i < list.size(); i++) {
-                json.append("  ".repeat(indent + 1));
-                json.append(valueToJson(list.get(i), indent + 1));
-                if (i < list.size() - 1) json.append(",");
-                json.append("\n");
+            writer.beginArray();
+            for (Object item : (List<?>) value) {
+                writeValue(writer, item);
             }
-            json.append("  ".repeat(indent)).append("]");
-            return json.toString();
+            writer.endArray();
         } else {
-            return objectToJson(value, indent);
+            writeObject(writer, value);
         }
     }
     
-    // Simple JSON array parser (basic implementation)
-    private static <T> List<T> parseJsonArray(String json, Class<T> clazz) {
-        List<T> result = new ArrayList<>();
-        try {
-            // Remove [ and ] from array
-            json = json.trim();
-            if (json.startsWith("[")) json = json.substring(1);
-            if (json.endsWith("]")) json = json.substring(0, json.length() - 1);
-            
-            // Split objects by },{ pattern
-            String[] objects = splitJsonObjects(json);
-            
-            for (String objStr : objects) {
-                objStr = objStr.trim();
-                if (!objStr.isEmpty()) {
-                    T obj = parseJsonObject(objStr, clazz);
-                    if (obj != null) {
-                        result.add(obj);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error parsing JSON array: " + e.getMessage());
+    // Read one JSON object from the stream straight into a new instance of clazz
+    private static <T> T readObject(ValueReader reader, Class<T> clazz) throws IOException {
+        if (reader.peek() == ValueReader.Token.NULL) {
+            reader.nextNull();
+            return null;
         }
-        return result;
-    }
-    
-    // Split JSON objects in array
-    private static String[] splitJsonObjects(String json) {
-        List<String> objects = new ArrayList<>();
-        int braceCount = 0;
-        int start = 0;
         
-        for (int i = 0; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '{') {
-                braceCount++;
-            } else if (c == '}') {
-                braceCount--;
-                if (braceCount == 0) {
-                    // Found complete object
-                    objects.add(json.substring(start, i + 1));
-                    // Skip comma and whitespace
-                    while (i + 1 < json.length() && (json.charAt(i + 1) == ',' || Character.isWhitespace(json.charAt(i + 1)))) {
-                        i++;
-                    }
-                    start = i + 1;
-                }
-            }
+        JsonCodec<T> codec = ModelCodecs.forClass(clazz);
+        if (codec != null) {
+            return codec.read(reader);
         }
         
-        return objects.toArray(new String[0]);
-    }
-    
-    // Simple JSON object parser (basic implementation)
-    @SuppressWarnings("unchecked")
-    private static <T> T parseJsonObject(String json, Class<T> clazz) {
+        // Reflective fallback for classes without a codec
+        T obj;
         try {
-            // Remove { and } from object
-            json = json.trim();
-            if (json.startsWith("{")) json = json.substring(1);
-            if (json.endsWith("}")) json = json.substring(0, json.length() - 1);
-            
-            T obj = clazz.getDeclaredConstructor().newInstance();
-            
-            // Parse key-value pairs
-            String[] pairs = splitJsonPairs(json);
-            
-            for (String pair : pairs) {
-                pair = pair.trim();
-                if (pair.isEmpty()) continue;
-                
-                int colonIndex = pair.indexOf(':');
-                if (colonIndex == -1) continue;
-                
-                String key = pair.substring(0, colonIndex).trim();
-                String value = pair.substring(colonIndex + 1).trim();
-                
-                // Remove quotes from key
-                if (key.startsWith("\"") && key.endsWith("\"")) {
-                    key = key.substring(1, key.length() - 1);
-                }
-                
-                // Set field value
-                setFieldValue(obj, key, value);
-            }
-            
-            return obj;
-        } catch (Exception e) {
+            obj = clazz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
             System.err.println("Error parsing JSON object for " + clazz.getSimpleName() + ": " + e.getMessage());
+            reader.skipValue();
             return null;
         }
+        
+        Map<String, Field> fields = fieldsByName(clazz);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fieldName = reader.nextName();
+            Field field = fields.get(fieldName);
+            if (field == null) {
+                reader.skipValue();
+                continue;
+            }
+            setFieldValue(reader, obj, field);
+        }
+        reader.endObject();
+        return obj;
     }
     
-    // Split JSON key-value pairs
-    private static String[] splitJsonPairs(String json) {
-        List<String> pairs = new ArrayList<>();
-        int start = 0;
-        boolean inQuotes = false;
-        int braceCount = 0;
-        int bracketCount = 0;
+    // Read the next value and assign it to the field, converting to the field type
+    private static void setFieldValue(ValueReader reader, Object obj, Field field) throws IOException {
+        Class<?> fieldType = field.getType();
         
-        for (int i = 0; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '"' && (i == 0 || json.charAt(i - 1) != '\\')) {
-                inQuotes = !inQuotes;
-            } else if (!inQuotes) {
-                if (c == '{') {
-                    braceCount++;
-                } else if (c == '}') {
-                    braceCount--;
-                } else if (c == '[') {
-                    bracketCount++;
-                } else if (c == ']') {
-                    bracketCount--;
-                } else if (c == ',' && braceCount == 0 && bracketCount == 0) {
-                    pairs.add(json.substring(start, i));
-                    start = i + 1;
-                }
+        if (reader.peek() == ValueReader.Token.NULL) {
+            reader.nextNull();
+            if (!fieldType.isPrimitive()) {
+                setField(field, obj, null);
             }
+            return;
+        }
+        
+        if (fieldType == List.class) {
+            setField(field, obj, readList(reader, listElementType(field)));
+            return;
+        }
+        
+        if (reader.peek() == ValueReader.Token.BEGIN_OBJECT) {
+            setField(field, obj, readObject(reader, fieldType));
+            return;
         }
         
-        // Add last pair
-        if (start < json.length()) {
-            pairs.add(json.substring(start));
+        if (reader.peek() == ValueReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
         }
         
-        return pairs.toArray(new String[0]);
+        String value = reader.nextString();
+        try {
+            setField(field, obj, convertScalar(value, fieldType));
+        } catch (RuntimeException e) {
+            System.err.println("Error setting field " + field.getName() + " to " + value + ": " + e.getMessage());
+        }
     }
     
-    // Set field value using reflection
-    private static void setFieldValue(Object obj, String fieldName, String value) {
-        try {
-            Field field = getFieldByName(obj.getClass(), fieldName);
-            if (field == null) return;
-            
-            field.setAccessible(true);
-            Class<?> fieldType = field.getType();
-            
-            // Remove quotes from string values
-            if (value.startsWith("\"") && value.endsWith("\"")) {
-                value = value.substring(1, value.length() - 1);
-                // Unescape characters
-                value = value.replace("\\\"", "\"").replace("\\\\", "\\");
-            }
-            
-            if (fieldType == String.class) {
-                field.set(obj, value);
-            } else if (fieldType == int.class || fieldType == Integer.class) {
-                field.set(obj, Integer.parseInt(value));
-            } else if (fieldType == long.class || fieldType == Long.class) {
-                field.set(obj, Long.parseLong(value));
-            } else if (fieldType == double.class || fieldType == Double.class) {
-                field.set(obj, Double.parseDouble(value));
-            } else if (fieldType == boolean.class || fieldType == Boolean.class) {
-                field.set(obj, Boolean.parseBoolean(value));
-            } else if (fieldType == LocalDateTime.class) {
-                field.set(obj, LocalDateTime.parse(value, DATE_FORMATTER));
-            } else if (fieldType == List.class) {
-                // Handle List types - specifically for different field types
-                if ("tickets".equals(fieldName)) {
-                    // Don't remove quotes for array parsing
-                    String arrayValue = value;
-                    if (arrayValue.startsWith("\"") && arrayValue.endsWith("\"")) {
-                        arrayValue = arrayValue.substring(1, arrayValue.length() - 1);
-                        // Unescape characters
-                        arrayValue = arrayValue.replace("\\\"", "\"").replace("\\\\", "\\");
-                    }
-                    
-                    // Parse as List<Ticket>
-                    List<model.Ticket> tickets = parseJsonArray(arrayValue, model.Ticket.class);
-                    field.set(obj, tickets);
-                } else if ("seats".equals(fieldName)) {
-                    // Handle seats field for Flight objects
-                    String arrayValue = value;
-                    if (arrayValue.startsWith("\"") && arrayValue.endsWith("\"")) {
-                        arrayValue = arrayValue.substring(1, arrayValue.length() - 1);
-                        // Unescape characters
-                        arrayValue = arrayValue.replace("\\\"", "\"").replace("\\\\", "\\");
-                    }
-                    
-                    // Parse as List<FlightSeat>
-                    List<model.FlightSeat> seats = parseJsonArray(arrayValue, model.FlightSeat.class);
-                    field.set(obj, seats);
-                } else if ("seatNumbers".equals(fieldName)) {
-                    // Handle seatNumbers field specifically
-                    String arrayValue = value;
-                    if (arrayValue.startsWith("\"") && arrayValue.endsWith("\"")) {
-                        arrayValue = arrayValue.substring(1, arrayValue.length() - 1);
-                        arrayValue = arrayValue.replace("\\\"", "\"").replace("\\\\", "\\");
-                    }
-                    
-                    if (arrayValue.startsWith("[") && arrayValue.endsWith("]")) {
-                        List<String> stringList = new ArrayList<>();
-                        String arrayContent = arrayValue.substring(1, arrayValue.length() - 1).trim();
-                        
-                        if (!arrayContent.isEmpty()) {
-                            // Split by comma but handle quoted strings
-                            String[] items = splitArrayItems(arrayContent);
-                            for (String item : items) {
-                                item = item.trim();
-                                if (item.startsWith("\"") && item.endsWith("\"")) {
-                                    item = item.substring(1, item.length() - 1);
-                                }
-                                stringList.add(item);
-                            }
-                        }
-                        field.set(obj, stringList);
-                    }
-                } else {
-                    // For other lists, try to parse as List<String>
-                    String arrayValue = value;
-                    if (arrayValue.startsWith("\"") && arrayValue.endsWith("\"")) {
-                        arrayValue = arrayValue.substring(1, arrayValue.length() - 1);
-                        arrayValue = arrayValue.replace("\\\"", "\"").replace("\\\\", "\\");
-                    }
-                    
-                    if (arrayValue.startsWith("[") && arrayValue.endsWith("]")) {
-                        List<String> stringList = new ArrayList<>();
-                        String arrayContent = arrayValue.substring(1, arrayValue.length() - 1).trim();
-                        if (!arrayContent.isEmpty()) {
-                            String[] items = splitArrayItems(arrayContent);
-                            for (String item : items) {
-                                item = item.trim();
-                                if (item.startsWith("\"") && item.endsWith("\"")) {
-                                    item = item.substring(1, item.length() - 1);
-                                }
-                                stringList.add(item);
-                            }
-                        }
-                        field.set(obj, stringList);
-                    }
+    // Read a JSON array into a list of the given element type
+    private static List<Object> readList(ValueReader reader, Class<?> elementType) throws IOException {
+        List<Object> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ValueReader.Token token = reader.peek();
+            if (token == ValueReader.Token.NULL) {
+                reader.nextNull();
+                list.add(null);
+            } else if (token == ValueReader.Token.BEGIN_OBJECT) {
+                Object element = readObject(reader, elementType);
+                if (element != null) {
+                    list.add(element);
+                }
+            } else if (token == ValueReader.Token.BEGIN_ARRAY) {
+                reader.skipValue();
+            } else {
+                String value = reader.nextString();
+                try {
+                    list.add(convertScalar(value, elementType));
+                } catch (RuntimeException e) {
+                    System.err.println("Error parsing list item " + value + ": " + e.getMessage());
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error setting field " + fieldName + " to " + value + ": " + e.getMessage());
         }
+        reader.endArray();
+        return list;
     }
     
-    // Split array items handling quoted strings properly
-    private static String[] splitArrayItems(String arrayContent) {
-        List<String> items = new ArrayList<>();
-        int start = 0;
-        boolean inQuotes = false;
-        
-        for (int i = 0; i < arrayContent.length(); i++) {
-            char c = arrayContent.charAt(i);
-            if (c == '"' && (i == 0 || arrayContent.charAt(i - 1) != '\\')) {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                items.add(arrayContent.substring(start, i));
-                start = i + 1;
-            }
+    private static Object convertScalar(String value, Class<?> type) {
+        if (type == String.class || type == Object.class) {
+            return value;
+        } else if (type == int.class || type == Integer.class) {
+            return Integer.parseInt(value);
+        } else if (type == long.class || type == Long.class) {
+            return Long.parseLong(value);
+        } else if (type == double.class || type == Double.class) {
+            return Double.parseDouble(value);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return Boolean.parseBoolean(value);
+        } else if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(value, DATE_FORMATTER);
         }
-        
-        // Add last item
-        if (start < arrayContent.length()) {
-            items.add(arrayContent.substring(start));
+        throw new IllegalArgumentException("Unsupported type " + type.getSimpleName());
+    }
+    
+    private static void setField(Field field, Object obj, Object value) {
+        try {
+            field.set(obj, value);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            System.err.println("Error setting field " + field.getName() + ": " + e.getMessage());
         }
-        
-        return items.toArray(new String[0]);
     }
-
-    // Get field by name including inherited fields
-    private static Field getFieldByName(Class<?> clazz, String fieldName) {
-        while (clazz != null) {
-            try {
-                return clazz.getDeclaredField(fieldName);
-            } catch (NoSuchFieldException e) {
-                clazz = clazz.getSuperclass();
+    
+    // Element type of a List field, taken from its generic signature
+    private static Class<?> listElementType(Field field) {
+        Type generic = field.getGenericType();
+        if (generic instanceof ParameterizedType) {
+            Type arg = ((ParameterizedType) generic).getActualTypeArguments()[0];
+            if (arg instanceof Class) {
+                return (Class<?>) arg;
             }
         }
-        return null;
+        return String.class;
+    }
+    
+    // Accessible fields by name, including inherited fields (cached per class)
+    private static Map<String, Field> fieldsByName(Class<?> clazz) {
+        Map<String, Field> fields = FIELD_CACHE.get(clazz);
+        if (fields == null) {
+            fields = new LinkedHashMap<>();
+            for (Field field : getAllFields(clazz)) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+                field.setAccessible(true);
+                fields.putIfAbsent(field.getName(), field);
+            }
+            FIELD_CACHE.put(clazz, fields);
+        }
+        return fields;
     }
 } 
\ No newline at end of file
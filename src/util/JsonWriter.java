@@ -0,0 +1,277 @@
+package util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Streaming JSON emitter. Tokens go straight into a reusable char buffer that is
+// drained to the underlying Writer; nothing is built up as intermediate Strings.
+public class JsonWriter implements ValueWriter, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String INDENT = "  ";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Nesting scopes
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int DOCUMENT = 6;
+
+    private Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private final boolean pretty;
+
+    // newline followed by depth * INDENT, grown on demand
+    private char[] indent = new char[0];
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    public JsonWriter(Writer out, boolean pretty) {
+        this.pretty = pretty;
+        reset(out);
+    }
+
+    // Point this writer at a new destination, keeping its buffers
+    public void reset(Writer out) {
+        this.out = out;
+        this.pos = 0;
+        this.stackSize = 0;
+        stack[stackSize++] = DOCUMENT;
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        write('[');
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        write('{');
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        int scope = stack[stackSize - 1];
+        if (scope == NONEMPTY_OBJECT) {
+            write(',');
+        } else if (scope != EMPTY_OBJECT) {
+            throw new IllegalStateException("Name outside of an object");
+        }
+        newline();
+        stack[stackSize - 1] = DANGLING_NAME;
+        writeQuoted(name);
+        write(':');
+        if (pretty) write(' ');
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        write(Double.toString(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    // Drain the buffer to the underlying Writer and flush it
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    private JsonWriter close(int empty, int nonEmpty, char bracket) throws IOException {
+        int scope = stack[stackSize - 1];
+        if (scope != empty && scope != nonEmpty) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        stackSize--;
+        if (scope == nonEmpty) {
+            newline();
+        }
+        write(bracket);
+        if (stackSize == 1 && pretty) {
+            write('\n');
+        }
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        switch (stack[stackSize - 1]) {
+            case NONEMPTY_ARRAY:
+                write(',');
+                newline();
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                newline();
+                break;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            case DOCUMENT:
+                break;
+            default:
+                throw new IllegalStateException("Expected a name before the value");
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private void newline() throws IOException {
+        if (!pretty) return;
+        int depth = stackSize - 1;
+        int length = 1 + depth * INDENT.length();
+        if (indent.length < length) {
+            indent = new char[Math.max(length, indent.length * 2)];
+            indent[0] = '\n';
+            for (int i = 1; i < indent.length; i++) {
+                indent[i] = ' ';
+            }
+        }
+        write(indent, length);
+    }
+
+    private void writeQuoted(String s) throws IOException {
+        write('"');
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': write('\\'); write('"'); break;
+                case '\\': write('\\'); write('\\'); break;
+                case '\n': write('\\'); write('n'); break;
+                case '\r': write('\\'); write('r'); break;
+                case '\t': write('\\'); write('t'); break;
+                case '\b': write('\\'); write('b'); break;
+                case '\f': write('\\'); write('f'); break;
+                default:
+                    if (c < 0x20) {
+                        write('\\'); write('u'); write('0'); write('0');
+                        write(HEX[c >> 4]); write(HEX[c & 0xF]);
+                    } else {
+                        write(c);
+                    }
+            }
+        }
+        write('"');
+    }
+
+    // Writes the decimal digits of value without allocating a String
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        if (pos + 20 > buffer.length) drain();
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) digits++;
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        pos = end;
+    }
+
+    private void write(char c) throws IOException {
+        if (pos == buffer.length) drain();
+        buffer[pos++] = c;
+    }
+
+    private void write(String s) throws IOException {
+        int length = s.length();
+        if (pos + length > buffer.length) drain();
+        if (length > buffer.length) {
+            out.write(s);
+            return;
+        }
+        s.getChars(0, length, buffer, pos);
+        pos += length;
+    }
+
+    private void write(char[] chars, int length) throws IOException {
+        if (pos + length > buffer.length) drain();
+        if (length > buffer.length) {
+            out.write(chars, 0, length);
+            return;
+        }
+        System.arraycopy(chars, 0, buffer, pos, length);
+        pos += length;
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package util;
+
+import model.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Registry of hand-written codecs for the persisted model classes. Each codec reads
+// and writes its fields directly through getters/setters, in declaration order, so
+// the files stay identical to what the reflective serializer produced.
+public class ModelCodecs {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final Map<Class<?>, JsonCodec<?>> CODECS = new HashMap<>();
+
+    public static final JsonCodec<FlightSeat> FLIGHT_SEAT = new JsonCodec<FlightSeat>() {
+        @Override
+        public void write(ValueWriter out, FlightSeat seat) throws IOException {
+            // BOOKED marks a seat held by an unconfirmed purchase. Holds live only in memory
+            // and expire, so after a restart nobody owns the hold: a held seat is written as
+            // AVAILABLE with no passenger, never as BOOKED
+            boolean held = seat.isBooked();
+            String status = held ? "AVAILABLE" : seat.getStatus();
+            out.beginObject();
+            out.name("seatNumber").value(seat.getSeatNumber());
+            out.name("status").value(status);
+            out.name("passengerId").value(held ? null : seat.getPassengerId());
+            out.endObject();
+        }
+
+        @Override
+        public FlightSeat read(ValueReader in) throws IOException {
+            FlightSeat seat = new FlightSeat();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "seatNumber": seat.setSeatNumber(readString(in)); break;
+                    case "status": seat.setStatus(readString(in)); break;
+                    case "passengerId": seat.setPassengerId(readString(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return seat;
+        }
+    };
+
+    public static final JsonCodec<Flight> FLIGHT = new JsonCodec<Flight>() {
+        @Override
+        public void write(ValueWriter out, Flight flight) throws IOException {
+            out.beginObject();
+            out.name("id").value(flight.getId());
+            out.name("flightNumber").value(flight.getFlightNumber());
+            out.name("routeId").value(flight.getRouteId());
+            out.name("aircraftId").value(flight.getAircraftId());
+            out.name("gateId").value(flight.getGateId());
+            out.name("departureTime"); writeDateTime(out, flight.getDepartureTime());
+            out.name("arrivalTime"); writeDateTime(out, flight.getArrivalTime());
+            out.name("status").value(flight.getStatus());
+            out.name("price").value(flight.getPrice());
+            out.name("seats"); writeList(out, flight.getSeats(), FLIGHT_SEAT);
+            out.endObject();
+        }
+
+        @Override
+        public Flight read(ValueReader in) throws IOException {
+            Flight flight = new Flight();
+            int available = -1;
+            int sold = -1;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": flight.setId(readString(in)); break;
+                    case "flightNumber": flight.setFlightNumber(readString(in)); break;
+                    case "routeId": flight.setRouteId(readString(in)); break;
+                    case "aircraftId": flight.setAircraftId(readString(in)); break;
+                    case "gateId": flight.setGateId(readString(in)); break;
+                    case "departureTime": flight.setDepartureTime(readDateTime(in)); break;
+                    case "arrivalTime": flight.setArrivalTime(readDateTime(in)); break;
+                    case "status": flight.setStatus(readString(in)); break;
+                    case "price": flight.setPrice(readDouble(in)); break;
+                    case "seats": flight.setSeats(readList(in, FLIGHT_SEAT)); break;
+                    case "availableSeats": available = readInt(in); break;
+                    case "soldSeats": sold = readInt(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            if (available >= 0 && sold >= 0) {
+                flight.setSeatCounts(available, sold);
+            }
+            return flight;
+        }
+    };
+
+    // Flight without its seat list, for the header file of the sharded flight layout. The
+    // seat counts are stored instead so listings need not load the seats. Reading a header
+    // with FLIGHT works too and leaves the seat list empty.
+    public static final JsonCodec<Flight> FLIGHT_HEADER = new JsonCodec<Flight>() {
+        @Override
+        public void write(ValueWriter out, Flight flight) throws IOException {
+            out.beginObject();
+            out.name("id").value(flight.getId());
+            out.name("flightNumber").value(flight.getFlightNumber());
+            out.name("routeId").value(flight.getRouteId());
+            out.name("aircraftId").value(flight.getAircraftId());
+            out.name("gateId").value(flight.getGateId());
+            out.name("departureTime"); writeDateTime(out, flight.getDepartureTime());
+            out.name("arrivalTime"); writeDateTime(out, flight.getArrivalTime());
+            out.name("status").value(flight.getStatus());
+            out.name("price").value(flight.getPrice());
+            if (flight.hasSeatCounts()) {
+                out.name("availableSeats").value(flight.getAvailableSeatsCount() + flight.getHeldSeatsCount());
+                out.name("soldSeats").value(flight.getSoldSeatsCount());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Flight read(ValueReader in) throws IOException {
+            return FLIGHT.read(in);
+        }
+    };
+
+    public static final JsonCodec<Ticket> TICKET = new JsonCodec<Ticket>() {
+        @Override
+        public void write(ValueWriter out, Ticket ticket) throws IOException {
+            out.beginObject();
+            out.name("id").value(ticket.getId());
+            out.name("pnr").value(ticket.getPnr());
+            out.name("customerId").value(ticket.getCustomerId());
+            out.name("flightId").value(ticket.getFlightId());
+            out.name("seatNumbers"); writeStringList(out, ticket.getSeatNumbers());
+            out.name("status").value(ticket.getStatus());
+            out.name("totalPrice").value(ticket.getTotalPrice());
+            out.name("purchaseTime"); writeDateTime(out, ticket.getPurchaseTime());
+            out.name("gateNumber").value(ticket.getGateNumber());
+            out.name("terminal").value(ticket.getTerminal());
+            out.endObject();
+        }
+
+        @Override
+        public Ticket read(ValueReader in) throws IOException {
+            Ticket ticket = new Ticket();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": ticket.setId(readString(in)); break;
+                    case "pnr": ticket.setPnr(readString(in)); break;
+                    case "customerId": ticket.setCustomerId(readString(in)); break;
+                    case "flightId": ticket.setFlightId(readString(in)); break;
+                    case "seatNumbers": ticket.setSeatNumbers(readStringList(in)); break;
+                    case "status": ticket.setStatus(readString(in)); break;
+                    case "totalPrice": ticket.setTotalPrice(readDouble(in)); break;
+                    case "purchaseTime": ticket.setPurchaseTime(readDateTime(in)); break;
+                    case "gateNumber": ticket.setGateNumber(readString(in)); break;
+                    case "terminal": ticket.setTerminal(readString(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return ticket;
+        }
+    };
+
+    public static final JsonCodec<Customer> CUSTOMER = new JsonCodec<Customer>() {
+        @Override
+        public void write(ValueWriter out, Customer customer) throws IOException {
+            out.beginObject();
+            out.name("tickets"); writeList(out, customer.getTickets(), TICKET);
+            writeUserFields(out, customer);
+            out.endObject();
+        }
+
+        @Override
+        public Customer read(ValueReader in) throws IOException {
+            Customer customer = new Customer();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("tickets".equals(name)) {
+                    customer.setTickets(readList(in, TICKET));
+                } else {
+                    readUserField(in, name, customer);
+                }
+            }
+            in.endObject();
+            return customer;
+        }
+    };
+
+    public static final JsonCodec<Admin> ADMIN = new JsonCodec<Admin>() {
+        @Override
+        public void write(ValueWriter out, Admin admin) throws IOException {
+            out.beginObject();
+            out.name("isSuperAdmin").value(admin.isSuperAdmin());
+            writeUserFields(out, admin);
+            out.endObject();
+        }
+
+        @Override
+        public Admin read(ValueReader in) throws IOException {
+            Admin admin = new Admin();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("isSuperAdmin".equals(name)) {
+                    admin.setSuperAdmin(readBoolean(in));
+                } else {
+                    readUserField(in, name, admin);
+                }
+            }
+            in.endObject();
+            return admin;
+        }
+    };
+
+    public static final JsonCodec<Route> ROUTE = new JsonCodec<Route>() {
+        @Override
+        public void write(ValueWriter out, Route route) throws IOException {
+            out.beginObject();
+            out.name("id").value(route.getId());
+            out.name("departure").value(route.getDeparture());
+            out.name("arrival").value(route.getArrival());
+            out.name("distance").value(route.getDistance());
+            out.name("duration").value(route.getDuration());
+            out.name("active").value(route.isActive());
+            out.endObject();
+        }
+
+        @Override
+        public Route read(ValueReader in) throws IOException {
+            Route route = new Route();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": route.setId(readString(in)); break;
+                    case "departure": route.setDeparture(readString(in)); break;
+                    case "arrival": route.setArrival(readString(in)); break;
+                    case "distance": route.setDistance(readDouble(in)); break;
+                    case "duration": route.setDuration(readInt(in)); break;
+                    case "active": route.setActive(readBoolean(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return route;
+        }
+    };
+
+    public static final JsonCodec<Aircraft> AIRCRAFT = new JsonCodec<Aircraft>() {
+        @Override
+        public void write(ValueWriter out, Aircraft aircraft) throws IOException {
+            out.beginObject();
+            out.name("id").value(aircraft.getId());
+            out.name("model").value(aircraft.getModel());
+            out.name("registrationNumber").value(aircraft.getRegistrationNumber());
+            out.name("capacity").value(aircraft.getCapacity());
+            out.name("manufacturer").value(aircraft.getManufacturer());
+            out.name("imagePath").value(aircraft.getImagePath());
+            out.name("status").value(aircraft.getStatus());
+            // The stored field, as the reflective serializer wrote it: getRows() would derive
+            // and store rows, and encoding must not change the model
+            out.name("rows").value(aircraft.getStoredRows());
+            out.name("seatsPerRow").value(aircraft.getSeatsPerRow());
+            out.endObject();
+        }
+
+        @Override
+        public Aircraft read(ValueReader in) throws IOException {
+            Aircraft aircraft = new Aircraft();
+            Integer rows = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": aircraft.setId(readString(in)); break;
+                    case "model": aircraft.setModel(readString(in)); break;
+                    case "registrationNumber": aircraft.setRegistrationNumber(readString(in)); break;
+                    case "capacity": aircraft.setCapacity(readInt(in)); break;
+                    case "manufacturer": aircraft.setManufacturer(readString(in)); break;
+                    case "imagePath": aircraft.setImagePath(readString(in)); break;
+                    case "status": aircraft.setStatus(readString(in)); break;
+                    case "rows": rows = readInt(in); break;
+                    case "seatsPerRow": aircraft.setSeatsPerRow(readInt(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            // setCapacity() derives rows, so the stored value is applied last
+            if (rows != null) {
+                aircraft.setRows(rows);
+            }
+            return aircraft;
+        }
+    };
+
+    public static final JsonCodec<Gate> GATE = new JsonCodec<Gate>() {
+        @Override
+        public void write(ValueWriter out, Gate gate) throws IOException {
+            out.beginObject();
+            out.name("id").value(gate.getId());
+            out.name("gateNumber").value(gate.getGateNumber());
+            out.name("terminal").value(gate.getTerminal());
+            out.name("available").value(gate.isAvailable());
+            out.name("currentFlightId").value(gate.getCurrentFlightId());
+            out.endObject();
+        }
+
+        @Override
+        public Gate read(ValueReader in) throws IOException {
+            Gate gate = new Gate();
+            Boolean available = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": gate.setId(readString(in)); break;
+                    case "gateNumber": gate.setGateNumber(readString(in)); break;
+                    case "terminal": gate.setTerminal(readString(in)); break;
+                    case "available": available = readBoolean(in); break;
+                    case "currentFlightId": gate.setCurrentFlightId(readString(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            // setCurrentFlightId() derives availability, so the stored flag is applied last
+            if (available != null) {
+                gate.setAvailable(available);
+            }
+            return gate;
+        }
+    };
+
+    public static final JsonCodec<Terminal> TERMINAL = new JsonCodec<Terminal>() {
+        @Override
+        public void write(ValueWriter out, Terminal terminal) throws IOException {
+            out.beginObject();
+            out.name("id").value(terminal.getId());
+            out.name("name").value(terminal.getName());
+            out.name("type").value(terminal.getType());
+            out.name("gates"); writeList(out, terminal.getGates(), GATE);
+            out.name("active").value(terminal.isActive());
+            out.endObject();
+        }
+
+        @Override
+        public Terminal read(ValueReader in) throws IOException {
+            Terminal terminal = new Terminal();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": terminal.setId(readString(in)); break;
+                    case "name": terminal.setName(readString(in)); break;
+                    case "type": terminal.setType(readString(in)); break;
+                    case "gates": terminal.setGates(readList(in, GATE)); break;
+                    case "active": terminal.setActive(readBoolean(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return terminal;
+        }
+    };
+
+    static {
+        CODECS.put(FlightSeat.class, FLIGHT_SEAT);
+        CODECS.put(Flight.class, FLIGHT);
+        CODECS.put(Ticket.class, TICKET);
+        CODECS.put(Customer.class, CUSTOMER);
+        CODECS.put(Admin.class, ADMIN);
+        CODECS.put(Route.class, ROUTE);
+        CODECS.put(Aircraft.class, AIRCRAFT);
+        CODECS.put(Gate.class, GATE);
+        CODECS.put(Terminal.class, TERMINAL);
+    }
+
+    // Codec registered for the exact class, or null if none
+    @SuppressWarnings("unchecked")
+    public static <T> JsonCodec<T> forClass(Class<T> clazz) {
+        return (JsonCodec<T>) CODECS.get(clazz);
+    }
+
+    // Shared User fields, written after the subclass fields like the reflective order
+    private static void writeUserFields(ValueWriter out, User user) throws IOException {
+        out.name("id").value(user.getId());
+        out.name("name").value(user.getName());
+        out.name("email").value(user.getEmail());
+        out.name("phone").value(user.getPhone());
+        out.name("gender").value(user.getGender());
+        out.name("password").value(user.getPassword());
+        out.name("role").value(user.getRole());
+    }
+
+    private static void readUserField(ValueReader in, String name, User user) throws IOException {
+        switch (name) {
+            case "id": user.setId(readString(in)); break;
+            case "name": user.setName(readString(in)); break;
+            case "email": user.setEmail(readString(in)); break;
+            case "phone": user.setPhone(readString(in)); break;
+            case "gender": user.setGender(readString(in)); break;
+            case "password": user.setPassword(readString(in)); break;
+            case "role": user.setRole(readString(in)); break;
+            default: in.skipValue();
+        }
+    }
+
+    // Value helpers. Malformed scalars are logged and replaced by a default instead of
+    // aborting the whole file, matching how the reflective loader behaved.
+
+    static String readString(ValueReader in) throws IOException {
+        ValueReader.Token token = in.peek();
+        if (token == ValueReader.Token.BEGIN_ARRAY || token == ValueReader.Token.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        return in.nextStringOrNull();
+    }
+
+    static int readInt(ValueReader in) throws IOException {
+        if (!isScalar(in)) return 0;
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            System.err.println("Error parsing int value: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    static double readDouble(ValueReader in) throws IOException {
+        if (!isScalar(in)) return 0;
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            System.err.println("Error parsing double value: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    static boolean readBoolean(ValueReader in) throws IOException {
+        return isScalar(in) && in.nextBoolean();
+    }
+
+    // True if the next value is a string, number or boolean; otherwise it is consumed
+    private static boolean isScalar(ValueReader in) throws IOException {
+        switch (in.peek()) {
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                return true;
+            default:
+                in.skipValue();
+                return false;
+        }
+    }
+
+    static LocalDateTime readDateTime(ValueReader in) throws IOException {
+        String value = readString(in);
+        if (value == null) return null;
+        try {
+            return LocalDateTime.parse(value, DATE_FORMATTER);
+        } catch (RuntimeException e) {
+            System.err.println("Error parsing date value " + value + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static void writeDateTime(ValueWriter out, LocalDateTime value) throws IOException {
+        out.value(value != null ? value.format(DATE_FORMATTER) : null);
+    }
+
+    static <T> List<T> readList(ValueReader in, JsonCodec<T> elementCodec) throws IOException {
+        if (in.peek() == ValueReader.Token.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == ValueReader.Token.BEGIN_OBJECT) {
+                list.add(elementCodec.read(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endArray();
+        return list;
+    }
+
+    static <T> void writeList(ValueWriter out, List<T> list, JsonCodec<T> elementCodec) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (T item : list) {
+            if (item == null) {
+                out.nullValue();
+            } else {
+                elementCodec.write(out, item);
+            }
+        }
+        out.endArray();
+    }
+
+    static List<String> readStringList(ValueReader in) throws IOException {
+        if (in.peek() == ValueReader.Token.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readString(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static void writeStringList(ValueWriter out, List<String> list) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (String item : list) {
+            out.value(item);
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,41 @@
+package util;
+
+// On-disk format for the data files. Services always name their files *.json; the
+// storage format decides which extension is actually used.
+public enum StorageFormat {
+    JSON(".json"),
+    BINARY(".bin");
+
+    private final String extension;
+
+    StorageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // "flights.json" -> "flights.bin" etc.
+    public String fileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        return base + extension;
+    }
+
+    public StorageFormat other() {
+        return this == JSON ? BINARY : JSON;
+    }
+
+    // Format named by the storage.format system property (json or binary), JSON by default
+    public static StorageFormat fromSystemProperty() {
+        String value = System.getProperty("storage.format");
+        if (value == null) return JSON;
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown storage format " + value + ", using JSON");
+            return JSON;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel for large numbers of timeouts, e.g. seat holds. Time advances
+// in ticks; level 0 has a slot per tick for the next 64 ticks, and each higher level has
+// slots 64 times as wide. A timeout goes into the slot of the lowest level that reaches
+// its deadline and moves down a level whenever the wheel below it has turned once, so
+// scheduling, cancelling and expiring each cost O(1) amortised however many timeouts are
+// pending. Ticks run on a shared background thread, only while timeouts are pending.
+public class TimingWheel<T> {
+
+    // A scheduled timeout; cancel it to keep its item from expiring
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline; // in ticks
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private Slot<T> slot;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+    }
+
+    private static final class Slot<T> {
+        Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.slot = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        // Unlink every timeout of the slot and return the first
+        Timeout<T> takeAll() {
+            Timeout<T> first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "timing-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long tickMillis;
+    private final Consumer<T> onExpiry;
+    private final List<List<Slot<T>>> levels = new ArrayList<>();
+    private long currentTick;
+    private int size;
+    private ScheduledFuture<?> ticking;
+
+    // onExpiry is called on the ticker thread for each item whose timeout was not cancelled
+    public TimingWheel(long tickMillis, Consumer<T> onExpiry) {
+        this.tickMillis = tickMillis;
+        this.onExpiry = onExpiry;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Slot<T>> slots = new ArrayList<>(SLOTS);
+            for (int i = 0; i < SLOTS; i++) {
+                slots.add(new Slot<>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    // Expire item once delayMillis have passed, at most a tick late and never early
+    public synchronized Timeout<T> schedule(T item, long delayMillis) {
+        long now = System.currentTimeMillis();
+        if (size == 0) {
+            // Nothing is pending, so the wheel can jump to the present
+            currentTick = now / tickMillis;
+            ticking = TICKER.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+        long deadline = (now + Math.max(0, delayMillis) + tickMillis - 1) / tickMillis;
+        Timeout<T> timeout = new Timeout<>(item, Math.max(deadline, currentTick + 1));
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    // False if the timeout already expired or was cancelled
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.slot == null) {
+            return false;
+        }
+        timeout.slot.remove(timeout);
+        size--;
+        stopIfIdle();
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void insert(Timeout<T> timeout) {
+        long delay = Math.min(timeout.deadline - currentTick, MAX_DELAY_TICKS);
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        // Deadlines beyond the top level are parked at its far end and placed again when
+        // they come down
+        long at = level == LEVELS - 1 ? Math.min(timeout.deadline, currentTick + MAX_DELAY_TICKS) : timeout.deadline;
+        levels.get(level).get((int) (at >>> (SLOT_BITS * level)) & (SLOTS - 1)).add(timeout);
+    }
+
+    private void tick() {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = nowTick();
+            while (currentTick < now && size > 0) {
+                currentTick++;
+                cascade();
+                Timeout<T> timeout = levels.get(0).get((int) currentTick & (SLOTS - 1)).takeAll();
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    timeout.slot = null;
+                    timeout.prev = null;
+                    timeout.next = null;
+                    if (timeout.deadline > currentTick) {
+                        insert(timeout);
+                    } else {
+                        expired.add(timeout.item);
+                        size--;
+                    }
+                    timeout = next;
+                }
+            }
+            stopIfIdle();
+        }
+        for (T item : expired) {
+            try {
+                onExpiry.accept(item);
+            } catch (RuntimeException e) {
+                System.err.println("Error expiring " + item + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // When a level has turned once, spread the next slot of the level above over it
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            Timeout<T> timeout = levels.get(level).get((int) (currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1)).takeAll();
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void stopIfIdle() {
+        if (size == 0 && ticking != null) {
+            ticking.cancel(false);
+            ticking = null;
+        }
+    }
+
+    private long nowTick() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+}
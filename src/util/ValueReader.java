@@ -0,0 +1,43 @@
+package util;
+
+import java.io.IOException;
+
+// Pull-style reader over a stream of structured values, implemented by the JSON and
+// binary storage formats so the model codecs work with either
+public interface ValueReader {
+
+    enum Token { BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    Token peek() throws IOException;
+
+    boolean hasNext() throws IOException;
+
+    void beginArray() throws IOException;
+
+    void endArray() throws IOException;
+
+    void beginObject() throws IOException;
+
+    void endObject() throws IOException;
+
+    String nextName() throws IOException;
+
+    // Strings, numbers and booleans as text
+    String nextString() throws IOException;
+
+    // Like nextString() but also accepts null
+    String nextStringOrNull() throws IOException;
+
+    void nextNull() throws IOException;
+
+    int nextInt() throws IOException;
+
+    long nextLong() throws IOException;
+
+    double nextDouble() throws IOException;
+
+    boolean nextBoolean() throws IOException;
+
+    // Skips the next value, including any nested arrays/objects
+    void skipValue() throws IOException;
+}
@@ -0,0 +1,28 @@
+package util;
+
+import java.io.IOException;
+
+// Push-style writer of structured values, implemented by the JSON and binary storage
+// formats so the model codecs work with either
+public interface ValueWriter {
+
+    ValueWriter beginArray() throws IOException;
+
+    ValueWriter endArray() throws IOException;
+
+    ValueWriter beginObject() throws IOException;
+
+    ValueWriter endObject() throws IOException;
+
+    ValueWriter name(String name) throws IOException;
+
+    ValueWriter value(String value) throws IOException;
+
+    ValueWriter value(long value) throws IOException;
+
+    ValueWriter value(double value) throws IOException;
+
+    ValueWriter value(boolean value) throws IOException;
+
+    ValueWriter nullValue() throws IOException;
+}
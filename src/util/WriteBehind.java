@@ -0,0 +1,183 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+// Deferred persistence of dirty collections. Services mark a data file dirty together with
+// the write that persists it; the write runs on a single background thread after at most
+// the flush delay. Marking a file that is already dirty only replaces its pending write,
+// so a burst of edits costs one file write. Pending writes are flushed before data is
+// reloaded and when the JVM exits.
+public class WriteBehind {
+
+    // Persists one collection; returns false if the write failed
+    public interface Write {
+        boolean run();
+    }
+
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private static final Map<String, Write> PENDING = new LinkedHashMap<>();
+    private static volatile Thread writerThread;
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "write-behind");
+        thread.setDaemon(true);
+        writerThread = thread;
+        return thread;
+    });
+
+    private static volatile long flushDelayMillis = Long.getLong("persist.flushDelayMs", 200L);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(WriteBehind::flush, "write-behind-shutdown"));
+    }
+
+    private WriteBehind() {
+    }
+
+    public static void setFlushDelayMillis(long millis) {
+        flushDelayMillis = millis;
+    }
+
+    // Mark key (a data file name) dirty; write replaces any write still pending for it
+    public static void markDirty(String key, Write write) {
+        schedule(key, write, flushDelayMillis);
+    }
+
+    // Mark a data file dirty, persisting a snapshot of items taken now
+    public static void markDirty(String fileName, Collection<?> items) {
+        markDirty(fileName, items, null, null);
+    }
+
+    // Same for a journaled file: the records appended before this call are dropped from
+    // the journal once the snapshot is on disk, while later ones are kept for replay. The
+    // mark is taken before the snapshot: services change items before journaling, so
+    // every record before the mark is then covered by the snapshot even while other
+    // threads keep changing items.
+    //
+    // upToDate tells whether items hold every journaled change. Several service instances
+    // may share a data file and its journal; one that has not reloaded since another
+    // journaled a change would write a snapshot without it and drop its record, so no
+    // snapshot is taken then and false is returned. Every change is journaled, so skipping
+    // loses nothing; the instance should reload (see catchUp) and compact on a later
+    // change. It is checked after the
+    // snapshot: services record a change before journaling it, so a record before the
+    // mark that the snapshot misses already shows here.
+    public static boolean markDirty(String fileName, Collection<?> items, Journal journal, BooleanSupplier upToDate) {
+        long mark = journal != null ? journal.mark() : 0;
+        List<?> snapshot = new ArrayList<>(items);
+        if (upToDate != null && !upToDate.getAsBoolean()) {
+            return false;
+        }
+        markDirty(fileName, () -> {
+            if (!JsonUtil.saveToFile(snapshot, fileName)) {
+                return false;
+            }
+            if (journal != null) {
+                journal.discardUpTo(mark);
+            }
+            return true;
+        });
+        return true;
+    }
+
+    // Run a service's reload on a daemon thread of its own, unless one started with the
+    // same running flag is still going. Not on the writer thread: reloads flush pending
+    // writes while they hold service locks.
+    public static void catchUp(AtomicBoolean running, Runnable reload) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                reload.run();
+            } finally {
+                running.set(false);
+            }
+        }, "catch-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static boolean isDirty(String key) {
+        synchronized (PENDING) {
+            return PENDING.containsKey(key);
+        }
+    }
+
+    // Run every pending write now and wait for them, including one already in progress
+    public static void flush() {
+        if (Thread.currentThread() == writerThread) {
+            runAllPending();
+            return;
+        }
+        try {
+            EXECUTOR.submit(WriteBehind::runAllPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error flushing pending writes: " + e.getCause());
+        } catch (RejectedExecutionException e) {
+            runAllPending();
+        }
+    }
+
+    private static void schedule(String key, Write write, long delayMillis) {
+        synchronized (PENDING) {
+            boolean scheduled = PENDING.containsKey(key);
+            PENDING.put(key, write);
+            if (!scheduled) {
+                EXECUTOR.schedule(() -> runPending(key), delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void runPending(String key) {
+        Write write;
+        synchronized (PENDING) {
+            write = PENDING.remove(key);
+        }
+        if (write != null) {
+            run(key, write);
+        }
+    }
+
+    private static void runAllPending() {
+        Map<String, Write> writes;
+        synchronized (PENDING) {
+            writes = new LinkedHashMap<>(PENDING);
+            PENDING.clear();
+        }
+        for (Map.Entry<String, Write> entry : writes.entrySet()) {
+            run(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void run(String key, Write write) {
+        boolean ok;
+        try {
+            ok = write.run();
+        } catch (RuntimeException e) {
+            System.err.println("Error writing " + key + ": " + e.getMessage());
+            ok = false;
+        }
+        if (!ok) {
+            // Keep the data dirty; a newer write for the same key takes precedence
+            synchronized (PENDING) {
+                if (!PENDING.containsKey(key)) {
+                    schedule(key, write, RETRY_DELAY_MILLIS);
+                }
+            }
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class AdminDashboardFrame extends JFrame {
     private JPanel customerStatsCard;
     private JPanel aircraftStatsCard;
     private JPanel ticketStatsCard;
+    private final UiTasks.Loader flightsLoader = new UiTasks.Loader(this);
+    private final UiTasks.Loader customersLoader = new UiTasks.Loader(this);
 
     public AdminDashboardFrame(Admin admin, UserService userService, FlightService flightService, BookingService bookingService) {
         this.admin = admin;
@@ -164,9 +166,10 @@ public class AdminDashboardFrame extends JFrame {
                     JOptionPane.YES_NO_OPTION);
                 
                 if (result == JOptionPane.YES_OPTION) {
-                    flightService.deleteFlight(flight.getId());
-                    loadFlights(model);
-                    JOptionPane.showMessageDialog(this, "Flight deleted successfully!");
+                    UiTasks.run(deleteBtn, () -> flightService.deleteFlight(flight.getId()), () -> {
+                        loadFlights(model);
+                        JOptionPane.showMessageDialog(this, "Flight deleted successfully!");
+                    });
                 }
             }
         });
@@ -276,9 +279,10 @@ public class AdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
             
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteAircraft(aircraftId);
-                loadAircraft(model);
-                JOptionPane.showMessageDialog(this, "Aircraft deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteAircraft(aircraftId), () -> {
+                    loadAircraft(model);
+                    JOptionPane.showMessageDialog(this, "Aircraft deleted successfully!");
+                });
             }
         });
 
@@ -370,9 +374,10 @@ public class AdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
             
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteRoute(routeId);
-                loadRoutes(model);
-                JOptionPane.showMessageDialog(this, "Route deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteRoute(routeId), () -> {
+                    loadRoutes(model);
+                    JOptionPane.showMessageDialog(this, "Route deleted successfully!");
+                });
             }
         });
 
@@ -583,7 +588,11 @@ public class AdminDashboardFrame extends JFrame {
 
     // Data loading methods
     private void loadFlights(DefaultTableModel model) {
-        model.setRowCount(0);
+        flightsLoader.load(this::flightRows, rows -> UiTasks.setRows(model, rows));
+    }
+
+    private List<Object[]> flightRows() {
+        List<Object[]> rows = new ArrayList<>();
         List<Flight> flights = flightService.getAllFlights();
         for (Flight flight : flights) {
             Route route = flightService.getRouteById(flight.getRouteId());
@@ -601,8 +610,9 @@ public class AdminDashboardFrame extends JFrame {
                 String.format("$%.2f", flight.getPrice()),
                 flight.getStatus() != null ? flight.getStatus() : "SCHEDULED"
             };
-            model.addRow(row);
+            rows.add(row);
         }
+        return rows;
     }
 
     private void loadAircraft(DefaultTableModel model) {
@@ -637,10 +647,14 @@ public class AdminDashboardFrame extends JFrame {
     }
 
     private void loadCustomers(DefaultTableModel model) {
-        model.setRowCount(0);
+        customersLoader.load(this::customerRows, rows -> UiTasks.setRows(model, rows));
+    }
+
+    private List<Object[]> customerRows() {
+        List<Object[]> rows = new ArrayList<>();
         List<Customer> customers = userService.getAllCustomers();
         for (Customer customer : customers) {
-            int bookingCount = bookingService.getCustomerTickets(customer.getId()).size();
+            int bookingCount = bookingService.getCustomerTicketCount(customer.getId());
             Object[] row = {
                 customer.getId(),
                 customer.getName(),
@@ -649,8 +663,9 @@ public class AdminDashboardFrame extends JFrame {
                 customer.getGender(),
                 bookingCount
             };
-            model.addRow(row);
+            rows.add(row);
         }
+        return rows;
     }
 
     // Dialog methods
@@ -788,18 +803,24 @@ public class AdminDashboardFrame extends JFrame {
                                          departureTime, arrivalTime, price);
 
                 // Handle gate assignment
-                if (gateCombo.getSelectedIndex() > 0) { // 0 is "No Gate Assigned"
-                    Gate selectedGate = availableGates.get(gateCombo.getSelectedIndex() - 1);
+                Gate selectedGate = gateCombo.getSelectedIndex() > 0 // 0 is "No Gate Assigned"
+                        ? availableGates.get(gateCombo.getSelectedIndex() - 1) : null;
+                if (selectedGate != null) {
                     flight.setGateId(selectedGate.getId());
                     // Mark gate as occupied
                     selectedGate.setCurrentFlightId(flightId);
-                    flightService.updateGate(selectedGate);
                 }
 
-                flightService.addFlight(flight);
-                loadFlights(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Flight added successfully!");
+                UiTasks.run(saveBtn, () -> {
+                    if (selectedGate != null) {
+                        flightService.updateGate(selectedGate);
+                    }
+                    flightService.addFlight(flight);
+                }, () -> {
+                    loadFlights(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Flight added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage() + 
                     "\nPlease use format YYYY-MM-DDTHH:MM for date/time fields.");
@@ -974,13 +995,14 @@ public class AdminDashboardFrame extends JFrame {
                 }
                 
                 // Update gate assignments if changed
+                List<Gate> changedGates = new ArrayList<>();
                 if (!java.util.Objects.equals(oldGateId, newGateId)) {
                     // Free up old gate
                     if (oldGateId != null) {
                         Gate oldGate = flightService.getGateById(oldGateId);
                         if (oldGate != null) {
                             oldGate.setCurrentFlightId(null);
-                            flightService.updateGate(oldGate);
+                            changedGates.add(oldGate);
                         }
                     }
                     
@@ -989,7 +1011,7 @@ public class AdminDashboardFrame extends JFrame {
                         Gate newGate = flightService.getGateById(newGateId);
                         if (newGate != null) {
                             newGate.setCurrentFlightId(flight.getId());
-                            flightService.updateGate(newGate);
+                            changedGates.add(newGate);
                         }
                     }
                 }
@@ -1003,10 +1025,16 @@ public class AdminDashboardFrame extends JFrame {
                 flight.setArrivalTime(arrivalTime);
                 flight.setPrice(price);
 
-                flightService.updateFlight(flight);
-                loadFlights(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Flight updated successfully!");
+                UiTasks.run(updateBtn, () -> {
+                    for (Gate gate : changedGates) {
+                        flightService.updateGate(gate);
+                    }
+                    flightService.updateFlight(flight);
+                }, () -> {
+                    loadFlights(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Flight updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage() + 
                     "\nPlease use format YYYY-MM-DDTHH:MM for date/time fields.");
@@ -1149,10 +1177,11 @@ public class AdminDashboardFrame extends JFrame {
                 }
 
                 Aircraft aircraft = new Aircraft(aircraftId, modelText, registration, capacity, manufacturer, imagePath);
-                flightService.addAircraft(aircraft);
-                loadAircraft(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Aircraft added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addAircraft(aircraft), () -> {
+                    loadAircraft(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Aircraft added successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Capacity must be a valid number!");
             } catch (Exception ex) {
@@ -1220,10 +1249,11 @@ public class AdminDashboardFrame extends JFrame {
                 int duration = Integer.parseInt(durationField.getText().trim());
 
                 Route route = new Route(routeId, departure, arrival, distance, duration);
-                flightService.addRoute(route);
-                loadRoutes(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Route added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addRoute(route), () -> {
+                    loadRoutes(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Route added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -1302,10 +1332,11 @@ public class AdminDashboardFrame extends JFrame {
                 route.setDistance(distance);
                 route.setDuration(duration);
 
-                flightService.updateRoute(route);
-                loadRoutes(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Route updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateRoute(route), () -> {
+                    loadRoutes(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Route updated successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Distance and duration must be valid numbers!");
             } catch (Exception ex) {
@@ -1448,10 +1479,9 @@ public class AdminDashboardFrame extends JFrame {
 
         // Seat availability information
         if (aircraft != null) {
-            List<FlightSeat> flightSeats = flightService.getFlightSeats(flight.getId());
             int totalSeats = aircraft.getCapacity();
-            int availableSeats = (int) flightSeats.stream().filter(FlightSeat::isAvailable).count();
-            int soldSeats = (int) flightSeats.stream().filter(FlightSeat::isSold).count();
+            int availableSeats = flightService.getAvailableSeatsCount(flight.getId());
+            int soldSeats = flightService.getSoldSeatsCount(flight.getId());
 
             gbc.gridx = 0; gbc.gridy = 4;
             detailsPanel.add(new JLabel("Available Seats:"), gbc);
@@ -1804,10 +1834,11 @@ public class AdminDashboardFrame extends JFrame {
                 aircraft.setManufacturer(manufacturer);
                 aircraft.setImagePath(imagePath);
 
-                flightService.updateAircraft(aircraft);
-                loadAircraft(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Aircraft updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateAircraft(aircraft), () -> {
+                    loadAircraft(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Aircraft updated successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Capacity must be a valid number!");
             } catch (Exception ex) {
@@ -1889,9 +1920,10 @@ public class AdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
                 
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteGate(gateId);
-                loadGates(model);
-                JOptionPane.showMessageDialog(this, "Gate deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteGate(gateId), () -> {
+                    loadGates(model);
+                    JOptionPane.showMessageDialog(this, "Gate deleted successfully!");
+                });
             }
         });
 
@@ -1969,9 +2001,10 @@ public class AdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
                 
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteTerminal(terminalId);
-                loadTerminals(model);
-                JOptionPane.showMessageDialog(this, "Terminal deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteTerminal(terminalId), () -> {
+                    loadTerminals(model);
+                    JOptionPane.showMessageDialog(this, "Terminal deleted successfully!");
+                });
             }
         });
 
@@ -2078,10 +2111,11 @@ public class AdminDashboardFrame extends JFrame {
                 String terminalId = terminals.get(terminalCombo.getSelectedIndex()).getId();
                 
                 Gate gate = new Gate(gateId, gateNumber, terminalId);
-                flightService.addGate(gate);
-                loadGates(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Gate added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addGate(gate), () -> {
+                    loadGates(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Gate added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2159,10 +2193,11 @@ public class AdminDashboardFrame extends JFrame {
                 gate.setGateNumber(gateNumber);
                 gate.setTerminal(terminalId);
                 
-                flightService.updateGate(gate);
-                loadGates(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Gate updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateGate(gate), () -> {
+                    loadGates(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Gate updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2219,10 +2254,11 @@ public class AdminDashboardFrame extends JFrame {
 
                 String terminalId = "T" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
                 Terminal terminal = new Terminal(terminalId, name, type);
-                flightService.addTerminal(terminal);
-                loadTerminals(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Terminal added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addTerminal(terminal), () -> {
+                    loadTerminals(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Terminal added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2281,10 +2317,11 @@ public class AdminDashboardFrame extends JFrame {
                 terminal.setName(name);
                 terminal.setType(type);
                 
-                flightService.updateTerminal(terminal);
-                loadTerminals(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Terminal updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateTerminal(terminal), () -> {
+                    loadTerminals(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Terminal updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2342,10 +2379,11 @@ public class AdminDashboardFrame extends JFrame {
         updateBtn.addActionListener(e -> {
             String newStatus = (String) statusCombo.getSelectedItem();
             flight.setStatus(newStatus);
-            flightService.updateFlight(flight);
-            loadFlights(model);
-            dialog.dispose();
-            JOptionPane.showMessageDialog(this, "Flight status updated successfully!");
+            UiTasks.run(updateBtn, () -> flightService.updateFlight(flight), () -> {
+                loadFlights(model);
+                dialog.dispose();
+                JOptionPane.showMessageDialog(this, "Flight status updated successfully!");
+            });
         });
 
         cancelBtn.addActionListener(e -> dialog.dispose());
@@ -2400,10 +2438,11 @@ public class AdminDashboardFrame extends JFrame {
         updateBtn.addActionListener(e -> {
             String newStatus = (String) statusCombo.getSelectedItem();
             aircraft.setStatus(newStatus);
-            flightService.updateAircraft(aircraft);
-            loadAircraft(model);
-            dialog.dispose();
-            JOptionPane.showMessageDialog(this, "Aircraft status updated successfully!");
+            UiTasks.run(updateBtn, () -> flightService.updateAircraft(aircraft), () -> {
+                loadAircraft(model);
+                dialog.dispose();
+                JOptionPane.showMessageDialog(this, "Aircraft status updated successfully!");
+            });
         });
 
         cancelBtn.addActionListener(e -> dialog.dispose());
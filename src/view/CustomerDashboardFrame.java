@@ -8,6 +8,7 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 public class CustomerDashboardFrame extends JFrame {
@@ -16,6 +17,10 @@ public class CustomerDashboardFrame extends JFrame {
     private BookingService bookingService;
     private JTabbedPane tabbedPane;
     private DefaultTableModel ticketsTableModel;
+    private final UiTasks.Loader flightsLoader = new UiTasks.Loader(this);
+    private final UiTasks.Loader ticketsLoader = new UiTasks.Loader(this);
+    // The flight search shown, to run again when the data changes
+    private Runnable currentSearch;
 
     public CustomerDashboardFrame(Customer customer, FlightService flightService, BookingService bookingService) {
         this.customer = customer;
@@ -28,6 +33,17 @@ public class CustomerDashboardFrame extends JFrame {
         setLocationRelativeTo(null);
         
         initializeUI();
+        UiTasks.reloadOnActivation(this, () -> {
+            if (!flightService.hasChangedFiles() && !bookingService.hasChangedFiles()) {
+                return false;
+            }
+            flightService.reloadData();
+            bookingService.reloadData();
+            return true;
+        }, () -> {
+            currentSearch.run();
+            loadCustomerTickets(ticketsTableModel);
+        });
     }
 
     private void initializeUI() {
@@ -262,10 +278,13 @@ public class CustomerDashboardFrame extends JFrame {
     }
 
     private void loadFlights(DefaultTableModel model, String from, String to) {
-        // Reload data to ensure we have the latest seat information
-        flightService.reloadData();
-        
-        model.setRowCount(0);
+        currentSearch = () -> loadFlights(model, from, to);
+        flightsLoader.load(() -> flightRows(from, to), rows -> UiTasks.setRows(model, rows));
+    }
+
+    // Off the EDT: seat counts may load a flight's seats from disk
+    private List<Object[]> flightRows(String from, String to) {
+        List<Object[]> rows = new ArrayList<>();
         List<Flight> flights;
         
         if (from != null && !from.isEmpty() && to != null && !to.isEmpty()) {
@@ -279,9 +298,7 @@ public class CustomerDashboardFrame extends JFrame {
             Aircraft aircraft = flightService.getAircraftById(flight.getAircraftId());
             
             if (route != null && aircraft != null) {
-                List<FlightSeat> flightSeats = flightService.getFlightSeats(flight.getId());
-                int availableSeats = (int) flightSeats.stream().filter(FlightSeat::isAvailable).count();
-                int soldSeats = (int) flightSeats.stream().filter(FlightSeat::isSold).count();
+                int availableSeats = flightService.getAvailableSeatsCount(flight.getId());
                 
                 Object[] row = {
                     flight.getFlightNumber(),
@@ -294,9 +311,10 @@ public class CustomerDashboardFrame extends JFrame {
                     availableSeats + "/" + aircraft.getCapacity(),
                     flight.getStatus() != null ? flight.getStatus() : "SCHEDULED"
                 };
-                model.addRow(row);
+                rows.add(row);
             }
         }
+        return rows;
     }
 
     private JPanel createMyTicketsPanel() {
@@ -367,8 +385,7 @@ public class CustomerDashboardFrame extends JFrame {
         // Event Listeners
         refreshBtn.addActionListener(e -> {
             // Reload data to ensure we have the latest tickets
-            bookingService.reloadData();
-            loadCustomerTickets(ticketsTableModel);
+            reloadCustomerTickets();
         });
         
         cancelBtn.addActionListener(e -> {
@@ -403,21 +420,7 @@ public class CustomerDashboardFrame extends JFrame {
                 JOptionPane.WARNING_MESSAGE);
                 
             if (result == JOptionPane.YES_OPTION) {
-                if (bookingService.cancelTicket(pnr, customer.getId())) {
-                    // Reload flight service data to reflect seat changes
-                    flightService.reloadData();
-                    
-                    JOptionPane.showMessageDialog(this, 
-                        "Ticket cancelled successfully!\nAll seats have been freed up.", 
-                        "Cancellation Successful", 
-                        JOptionPane.INFORMATION_MESSAGE);
-                    loadCustomerTickets(ticketsTableModel);
-                } else {
-                    JOptionPane.showMessageDialog(this, 
-                        "Failed to cancel ticket!\nPlease try again or contact support.", 
-                        "Cancellation Failed", 
-                        JOptionPane.ERROR_MESSAGE);
-                }
+                cancelTicket(cancelBtn, pnr);
             }
         });
 
@@ -427,11 +430,36 @@ public class CustomerDashboardFrame extends JFrame {
         return panel;
     }
 
+    private void cancelTicket(Component source, String pnr) {
+        UiTasks.run(source, () -> bookingService.cancelTicket(pnr, customer.getId()), cancelled -> {
+            if (cancelled) {
+                JOptionPane.showMessageDialog(this, 
+                    "Ticket cancelled successfully!\nAll seats have been freed up.", 
+                    "Cancellation Successful", 
+                    JOptionPane.INFORMATION_MESSAGE);
+                loadCustomerTickets(ticketsTableModel);
+            } else {
+                JOptionPane.showMessageDialog(this, 
+                    "Failed to cancel ticket!\nPlease try again or contact support.", 
+                    "Cancellation Failed", 
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
     private void loadCustomerTickets(DefaultTableModel model) {
-        // Always reload data to ensure we have the latest tickets
-        bookingService.reloadData();
-        
-        model.setRowCount(0);
+        ticketsLoader.load(this::ticketRows, rows -> UiTasks.setRows(model, rows));
+    }
+
+    private void reloadCustomerTickets() {
+        ticketsLoader.load(() -> {
+            bookingService.reloadData();
+            return ticketRows();
+        }, rows -> UiTasks.setRows(ticketsTableModel, rows));
+    }
+
+    private List<Object[]> ticketRows() {
+        List<Object[]> rows = new ArrayList<>();
         List<Ticket> tickets = bookingService.getCustomerTickets(customer.getId());
         
         for (Ticket ticket : tickets) {
@@ -472,10 +500,11 @@ public class CustomerDashboardFrame extends JFrame {
                         ticket.getStatus(),
                         String.format("$%.2f", ticket.getTotalPrice())
                     };
-                    model.addRow(row);
+                    rows.add(row);
                 }
             }
         }
+        return rows;
     }
 
 
@@ -542,10 +571,8 @@ public class CustomerDashboardFrame extends JFrame {
         // Public method to refresh tickets and switch to tickets tab
     public void refreshTicketsAndSwitchTab() {
         // Reload data to ensure we have the latest tickets
-        bookingService.reloadData();
-        
         if (ticketsTableModel != null) {
-            loadCustomerTickets(ticketsTableModel);
+            reloadCustomerTickets();
         }
         // Switch to "My Tickets" tab (index 1)
         if (tabbedPane != null) {
@@ -835,18 +862,7 @@ public class CustomerDashboardFrame extends JFrame {
                     JOptionPane.WARNING_MESSAGE);
                     
                 if (result == JOptionPane.YES_OPTION) {
-                    if (bookingService.cancelTicket(ticket.getPnr(), customer.getId())) {
-                        JOptionPane.showMessageDialog(this, 
-                            "Ticket cancelled successfully!\nAll seats have been freed up.", 
-                            "Cancellation Successful", 
-                            JOptionPane.INFORMATION_MESSAGE);
-                        loadCustomerTickets(ticketsTableModel);
-                    } else {
-                        JOptionPane.showMessageDialog(this, 
-                            "Failed to cancel ticket!\nPlease try again or contact support.", 
-                            "Cancellation Failed", 
-                            JOptionPane.ERROR_MESSAGE);
-                    }
+                    cancelTicket(this, ticket.getPnr());
                 }
             });
             buttonPanel.add(cancelBtn);
@@ -8,6 +8,7 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 public class FlightBrowserFrame extends JFrame {
@@ -15,6 +16,9 @@ public class FlightBrowserFrame extends JFrame {
     private Customer customer;
     private JTable flightTable;
     private DefaultTableModel tableModel;
+    private final UiTasks.Loader flightsLoader = new UiTasks.Loader(this);
+    // The search shown, to run again when the data changes
+    private Runnable currentSearch = this::loadFlights;
 
     public FlightBrowserFrame(FlightService flightService, Customer customer) {
         this.flightService = flightService;
@@ -27,6 +31,13 @@ public class FlightBrowserFrame extends JFrame {
         
         initializeUI();
         loadFlights();
+        UiTasks.reloadOnActivation(this, () -> {
+            if (!flightService.hasChangedFiles()) {
+                return false;
+            }
+            flightService.reloadData();
+            return true;
+        }, () -> currentSearch.run());
     }
 
     private void initializeUI() {
@@ -234,39 +245,19 @@ public class FlightBrowserFrame extends JFrame {
     }
 
     private void loadFlights() {
-        // Reload data to ensure we have the latest seat information
-        flightService.reloadData();
-        
-        tableModel.setRowCount(0);
-        List<Flight> flights = flightService.getAllFlights();
-        
-        for (Flight flight : flights) {
-            Route route = flightService.getRouteById(flight.getRouteId());
-            Aircraft aircraft = flightService.getAircraftById(flight.getAircraftId());
-            
-            if (route != null && aircraft != null) {
-                Object[] row = {
-                    flight.getFlightNumber(),
-                    route.getDeparture(),
-                    route.getArrival(),
-                    flight.getDepartureTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                    flight.getArrivalTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                    String.format("$%.2f", flight.getPrice()),
-                    getAvailableSeats(aircraft, flight.getId()),
-                    flight.getStatus() != null ? flight.getStatus() : "SCHEDULED"
-                };
-                tableModel.addRow(row);
-            }
-        }
+        currentSearch = this::loadFlights;
+        flightsLoader.load(() -> flightRows(flightService.getAllFlights()), rows -> UiTasks.setRows(tableModel, rows));
     }
 
     private void searchFlights(String departure, String arrival) {
-        // Reload data to ensure we have the latest seat information
-        flightService.reloadData();
-        
-        tableModel.setRowCount(0);
-        List<Flight> flights = flightService.searchFlights(departure, arrival, null);
-        
+        currentSearch = () -> searchFlights(departure, arrival);
+        flightsLoader.load(() -> flightRows(flightService.searchFlights(departure, arrival, null)),
+                rows -> UiTasks.setRows(tableModel, rows));
+    }
+
+    // Off the EDT: seat counts may load a flight's seats from disk
+    private List<Object[]> flightRows(List<Flight> flights) {
+        List<Object[]> rows = new ArrayList<>();
         for (Flight flight : flights) {
             Route route = flightService.getRouteById(flight.getRouteId());
             Aircraft aircraft = flightService.getAircraftById(flight.getAircraftId());
@@ -282,13 +273,14 @@ public class FlightBrowserFrame extends JFrame {
                     getAvailableSeats(aircraft, flight.getId()),
                     flight.getStatus() != null ? flight.getStatus() : "SCHEDULED"
                 };
-                tableModel.addRow(row);
+                rows.add(row);
             }
         }
+        return rows;
     }
 
     private int getAvailableSeats(Aircraft aircraft, String flightId) {
-        return flightService.getAvailableSeats(flightId).size();
+        return flightService.getAvailableSeatsCount(flightId);
     }
 
     private void bookSelectedFlight() {
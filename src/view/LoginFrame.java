@@ -20,9 +20,12 @@ public class LoginFrame extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        userService = new UserService();
-        flightService = new FlightService();
-        bookingService = new BookingService(flightService, userService);
+        // All data files are parsed in parallel; each service waits only for its own
+        StartupLoader loader = new StartupLoader();
+        userService = loader.createUserService();
+        flightService = loader.createFlightService();
+        bookingService = loader.createBookingService(flightService, userService);
+        loader.printLoadTimes();
 
         initializeUI();
     }
@@ -2,6 +2,7 @@ package view;
 
 import model.*;
 import service.*;
+import util.DataDirectoryWatcher;
 
 import javax.swing.*;
 import java.awt.*;
@@ -9,6 +10,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class SeatSelectionDialog extends JDialog {
     private Flight flight;
@@ -17,9 +20,16 @@ public class SeatSelectionDialog extends JDialog {
     private BookingService bookingService;
     private JPanel seatGridPanel;
     private List<FlightSeat> selectedSeats;
+    // Selected seats are held while the customer decides, so nobody else can buy them
+    private Map<FlightSeat, SeatHold> seatHolds = new LinkedHashMap<>();
     private JButton[][] seatButtons;
     private JLabel selectedSeatLabel;
     private JLabel priceLabel;
+    private JButton purchaseButton;
+    // Holds requested but not answered yet, and refreshes of the seat map; EDT only
+    private int pendingHolds;
+    private int seatMapGeneration;
+    private final UiTasks.Loader seatMapLoader = new UiTasks.Loader(this);
     private static final int MAX_SEATS = 4;
     
     public SeatSelectionDialog(JFrame parent, Flight flight, Customer customer, FlightService flightService) {
@@ -27,12 +37,8 @@ public class SeatSelectionDialog extends JDialog {
         this.flight = flight;
         this.customer = customer;
         this.flightService = flightService;
-        this.bookingService = new BookingService(flightService);
         this.selectedSeats = new ArrayList<>();
         
-        // Reload data to ensure we have the latest seat information
-        this.flightService.reloadData();
-        
         setSize(800, 600);
         setLocationRelativeTo(parent);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
@@ -108,8 +114,8 @@ public class SeatSelectionDialog extends JDialog {
             BorderFactory.createLineBorder(Color.GRAY), "Seat Legend"));
 
         // Legend items
-        String[] labels = {"Available", "Sold", "Selected"};
-        Color[] colors = {new Color(76, 175, 80), new Color(244, 67, 54), new Color(33, 150, 243)};
+        String[] labels = {"Available", "Sold", "Reserved", "Selected"};
+        Color[] colors = {new Color(76, 175, 80), new Color(244, 67, 54), new Color(255, 193, 7), new Color(33, 150, 243)};
 
         for (int i = 0; i < labels.length; i++) {
             JPanel legendItem = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
@@ -206,6 +212,10 @@ public class SeatSelectionDialog extends JDialog {
                 seatButton.setBackground(new Color(244, 67, 54)); // Red - Sold
                 seatButton.setForeground(Color.WHITE);
                 seatButton.setEnabled(false);
+            } else if (seat.isBooked()) {
+                seatButton.setBackground(new Color(255, 193, 7)); // Yellow - Reserved by someone else
+                seatButton.setForeground(Color.BLACK);
+                seatButton.setEnabled(false);
             } else {
                 seatButton.setBackground(new Color(76, 175, 80)); // Green - Available
                 seatButton.setForeground(Color.WHITE);
@@ -227,14 +237,23 @@ public class SeatSelectionDialog extends JDialog {
     }
 
     private void toggleSeatSelection(FlightSeat seat, JButton button) {
+        // Seats cannot be held until the booking service is loaded, nor changed while a
+        // purchase is in progress
+        if (bookingService == null || !purchaseButton.isEnabled()) {
+            return;
+        }
         if (selectedSeats.contains(seat)) {
             // Deselect seat
             selectedSeats.remove(seat);
+            SeatHold hold = seatHolds.remove(seat);
+            if (hold != null) {
+                UiTasks.run(button, () -> bookingService.releaseHold(hold.getId()), released -> { });
+            }
             button.setBackground(new Color(76, 175, 80)); // Green - Available
             button.setForeground(Color.WHITE);
         } else {
             // Check if we can select more seats
-            if (selectedSeats.size() >= MAX_SEATS) {
+            if (selectedSeats.size() + pendingHolds >= MAX_SEATS) {
                 JOptionPane.showMessageDialog(this, 
                     "You can select a maximum of " + MAX_SEATS + " seats per purchase.", 
                     "Maximum Seats Reached", 
@@ -242,10 +261,33 @@ public class SeatSelectionDialog extends JDialog {
                 return;
             }
             
-            // Select seat
-            selectedSeats.add(seat);
-            button.setBackground(new Color(33, 150, 243)); // Blue - Selected
-            button.setForeground(Color.WHITE);
+            // Hold the seat while the customer decides; the button is disabled until then
+            pendingHolds++;
+            int generation = seatMapGeneration;
+            UiTasks.run(button, () -> bookingService.holdSeats(customer.getId(), flight.getId(), List.of(seat.getSeatNumber())), hold -> {
+                pendingHolds--;
+                if (hold != null && (generation != seatMapGeneration || !isDisplayable())) {
+                    // Refreshed or closed meanwhile, so the seat is no longer shown as selectable
+                    UiTasks.run(null, () -> bookingService.releaseHold(hold.getId()), released -> { });
+                    return;
+                }
+                if (hold == null) {
+                    JOptionPane.showMessageDialog(this,
+                        "Seat " + seat.getSeatNumber() + " was just taken by another customer.",
+                        "Seat Not Available",
+                        JOptionPane.WARNING_MESSAGE);
+                    refreshSeatMap();
+                    return;
+                }
+                
+                // Select seat
+                seatHolds.put(seat, hold);
+                selectedSeats.add(seat);
+                button.setBackground(new Color(33, 150, 243)); // Blue - Selected
+                button.setForeground(Color.WHITE);
+                updateSelectionInfo();
+            });
+            return;
         }
         
         // Update labels
@@ -311,13 +353,14 @@ public class SeatSelectionDialog extends JDialog {
         refreshButton.setOpaque(true); // Required for Mac compatibility
         refreshButton.addActionListener(e -> refreshSeatMap());
 
-        JButton purchaseButton = new JButton("Purchase Seats");
+        purchaseButton = new JButton("Purchase Seats");
         purchaseButton.setPreferredSize(new Dimension(130, 35));
         purchaseButton.setBackground(new Color(76, 175, 80));
         purchaseButton.setForeground(Color.WHITE);
         purchaseButton.setFont(new Font("Arial", Font.BOLD, 12));
         purchaseButton.setOpaque(true); // Required for Mac compatibility
         purchaseButton.addActionListener(this::purchaseSelectedSeats);
+        purchaseButton.setEnabled(false); // until the booking service is loaded
 
         buttonPanel.add(cancelButton);
         buttonPanel.add(refreshButton);
@@ -348,25 +391,25 @@ public class SeatSelectionDialog extends JDialog {
             return;
         }
 
-        try {
-            // Prepare seat numbers list
-            List<String> seatNumbers = new ArrayList<>();
-            StringBuilder seatLabels = new StringBuilder();
-            
-            for (int i = 0; i < selectedSeats.size(); i++) {
-                FlightSeat seat = selectedSeats.get(i);
-                String seatLabel = getSeatLabel(seat);
-                seatNumbers.add(seatLabel);
-                
-                if (i > 0) seatLabels.append(", ");
-                seatLabels.append(seatLabel);
-            }
-            
-            double totalPrice = flight.getPrice() * selectedSeats.size();
-            
-            // Use the new multi-seat purchase method
-            String pnr = bookingService.purchaseMultipleSeats(customer.getId(), flight.getId(), seatNumbers, flight.getPrice());
+        // Prepare seat labels
+        StringBuilder seatLabels = new StringBuilder();
+        
+        for (int i = 0; i < selectedSeats.size(); i++) {
+            FlightSeat seat = selectedSeats.get(i);
+            String seatLabel = getSeatLabel(seat);
             
+            if (i > 0) seatLabels.append(", ");
+            seatLabels.append(seatLabel);
+        }
+        
+        double totalPrice = flight.getPrice() * selectedSeats.size();
+        
+        // Buy the held seats as one ticket
+        List<String> holdIds = new ArrayList<>();
+        for (SeatHold hold : seatHolds.values()) {
+            holdIds.add(hold.getId());
+        }
+        UiTasks.run(purchaseButton, () -> bookingService.confirmHolds(holdIds, flight.getPrice()), pnr -> {
             if (pnr != null) {
                 String message = String.format("Purchase Successful!\n\nPNR: %s\nFlight: %s\nSeats: %s\nTotal Price: $%.2f\n\nPlease save your PNR for future reference.",
                     pnr,
@@ -376,9 +419,6 @@ public class SeatSelectionDialog extends JDialog {
                 
                 JOptionPane.showMessageDialog(this, message, "Purchase Confirmed", JOptionPane.INFORMATION_MESSAGE);
                 
-                // Reload flight service data to reflect seat changes
-                flightService.reloadData();
-                
                 // Refresh parent window if it's a CustomerDashboardFrame
                 java.awt.Window parentWindow = SwingUtilities.getWindowAncestor(this);
                 if (parentWindow instanceof CustomerDashboardFrame) {
@@ -386,20 +426,15 @@ public class SeatSelectionDialog extends JDialog {
                     parentFrame.refreshTicketsAndSwitchTab();
                 }
                 
+                seatHolds.clear();
                 dispose();
             } else {
                 JOptionPane.showMessageDialog(this,
-                    "Purchase failed: One or more seats may no longer be available.",
+                    "Purchase failed: One or more seats may no longer be available or your reservation has expired.",
                     "Purchase Error",
                     JOptionPane.ERROR_MESSAGE);
             }
-            
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this,
-                "Purchase failed: " + ex.getMessage(),
-                "Purchase Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private String getSeatLabel(FlightSeat seat) {
@@ -407,24 +442,63 @@ public class SeatSelectionDialog extends JDialog {
     }
 
     private void updateBookingService() {
-        // Refresh the booking service to ensure we have the latest seat availability
-        this.bookingService = new BookingService(flightService);
+        // Load a fresh booking service to ensure we have the latest seat availability; it
+        // reads the tickets and customers, so off the EDT
+        UiTasks.run(this, () -> new BookingService(flightService), service -> {
+            this.bookingService = service;
+            purchaseButton.setEnabled(true);
+        });
+    }
+
+    // Take the holds of the seats still selected, to give them up with releaseHolds
+    private List<String> takeHolds() {
+        List<String> holdIds = new ArrayList<>();
+        for (SeatHold hold : seatHolds.values()) {
+            holdIds.add(hold.getId());
+        }
+        seatHolds.clear();
+        return holdIds;
+    }
+
+    // Off the EDT: releasing takes the flight's lock and may load its seats
+    private void releaseHolds(List<String> holdIds) {
+        for (String holdId : holdIds) {
+            bookingService.releaseHold(holdId);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        List<String> holdIds = takeHolds();
+        if (!holdIds.isEmpty()) {
+            UiTasks.run(null, () -> releaseHolds(holdIds), () -> { });
+        }
+        super.dispose();
     }
 
     // Method to refresh the seat map display
     public void refreshSeatMap() {
-        // Reload data from files
-        flightService.reloadData();
-        
-        // Clear selected seats
+        // Clear selected seats, then load the seats once their holds are given up
+        List<String> holdIds = takeHolds();
         selectedSeats.clear();
-        
+        seatMapGeneration++;
+        updateSelectionInfo();
+        seatMapLoader.load(() -> {
+            releaseHolds(holdIds);
+            // Without the watcher nothing else picks up seats booked by other instances
+            if (!DataDirectoryWatcher.isEnabled()) {
+                flightService.reloadData();
+            }
+            return flightService.getFlightSeats(flight.getId());
+        }, this::showSeatMap);
+    }
+
+    private void showSeatMap(List<FlightSeat> seats) {
         // Recreate the seat grid panel
         seatGridPanel.removeAll();
         
         // Recreate the seat grid with updated data
         Aircraft aircraft = flightService.getAircraftById(flight.getAircraftId());
-        List<FlightSeat> seats = flightService.getFlightSeats(flight.getId());
         
         // Calculate grid dimensions (6 seats per row: 3-3 with aisle)
         int seatsPerRow = 6;
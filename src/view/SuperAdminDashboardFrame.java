@@ -29,6 +29,8 @@ public class SuperAdminDashboardFrame extends JFrame {
     private JPanel ticketStatsCard;
     private JPanel adminStatsCard;
     private JPanel routeStatsCard;
+    private final UiTasks.Loader flightsLoader = new UiTasks.Loader(this);
+    private final UiTasks.Loader customersLoader = new UiTasks.Loader(this);
 
     public SuperAdminDashboardFrame(Admin admin, UserService userService, FlightService flightService, BookingService bookingService) {
         this.admin = admin;
@@ -138,16 +140,20 @@ public class SuperAdminDashboardFrame extends JFrame {
         detailsPanel.add(soldLabel, gbc);
 
         // Event handlers
+        UiTasks.Loader seatMapLoader = new UiTasks.Loader(this);
         showSeatsBtn.addActionListener(e -> {
             int selectedIndex = flightCombo.getSelectedIndex();
             if (selectedIndex >= 0 && selectedIndex < flights.size()) {
                 Flight selectedFlight = flights.get(selectedIndex);
-                displaySeatMap(selectedFlight, seatMapPanel, aircraftLabel, capacityLabel, 
-                             availableLabel, bookedLabel, soldLabel);
+                // The seats may have to be read from disk
+                seatMapLoader.load(() -> flightService.getFlightSeats(selectedFlight.getId()),
+                    flightSeats -> displaySeatMap(selectedFlight, flightSeats, seatMapPanel, aircraftLabel, capacityLabel, 
+                             availableLabel, bookedLabel, soldLabel));
             }
         });
 
         refreshFlightsBtn.addActionListener(e -> {
+            seatMapLoader.cancel();
             // Refresh the flight combo box
             flightCombo.removeAllItems();
             List<Flight> updatedFlights = flightService.getAllFlights();
@@ -178,7 +184,7 @@ public class SuperAdminDashboardFrame extends JFrame {
         return panel;
     }
 
-    private void displaySeatMap(Flight flight, JPanel seatMapPanel, JLabel aircraftLabel,
+    private void displaySeatMap(Flight flight, List<FlightSeat> flightSeats, JPanel seatMapPanel, JLabel aircraftLabel,
                                JLabel capacityLabel, JLabel availableLabel, JLabel bookedLabel, JLabel soldLabel) {
         seatMapPanel.removeAll();
         
@@ -192,7 +198,6 @@ public class SuperAdminDashboardFrame extends JFrame {
         aircraftLabel.setText("Aircraft: " + aircraft.getModel());
         capacityLabel.setText("Capacity: " + aircraft.getCapacity());
 
-        List<FlightSeat> flightSeats = flightService.getFlightSeats(flight.getId());
         int available = (int) flightSeats.stream().filter(FlightSeat::isAvailable).count();
         int sold = (int) flightSeats.stream().filter(FlightSeat::isSold).count();
 
@@ -253,6 +258,9 @@ public class SuperAdminDashboardFrame extends JFrame {
                     if (seat.isAvailable()) {
                         seatButton.setBackground(new Color(76, 175, 80)); // Green - Available
                         seatButton.setForeground(Color.WHITE);
+                    } else if (seat.isBooked()) {
+                        seatButton.setBackground(new Color(255, 193, 7)); // Yellow - Held
+                        seatButton.setForeground(Color.BLACK);
                     } else {
                         seatButton.setBackground(new Color(244, 67, 54)); // Red - Sold
                         seatButton.setForeground(Color.WHITE);
@@ -353,9 +361,10 @@ public class SuperAdminDashboardFrame extends JFrame {
                 JOptionPane.WARNING_MESSAGE);
             
             if (result == JOptionPane.YES_OPTION) {
-                userService.deleteAdmin(adminId);
-                loadAdmins(model);
-                JOptionPane.showMessageDialog(this, "Admin deleted successfully!");
+                UiTasks.run(deleteBtn, () -> userService.deleteAdmin(adminId), () -> {
+                    loadAdmins(model);
+                    JOptionPane.showMessageDialog(this, "Admin deleted successfully!");
+                });
             }
         });
 
@@ -435,10 +444,11 @@ public class SuperAdminDashboardFrame extends JFrame {
                     JOptionPane.YES_NO_OPTION);
                 
                             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteFlight(flight.getId());
-                loadFlights(model);
-                refreshStatistics(); // Refresh statistics after deleting flight
-                JOptionPane.showMessageDialog(this, "Flight deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteFlight(flight.getId()), () -> {
+                    loadFlights(model);
+                    refreshStatistics(); // Refresh statistics after deleting flight
+                    JOptionPane.showMessageDialog(this, "Flight deleted successfully!");
+                });
             }
             }
         });
@@ -564,9 +574,10 @@ public class SuperAdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
             
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteAircraft(aircraftId);
-                loadAircraft(model);
-                JOptionPane.showMessageDialog(this, "Aircraft deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteAircraft(aircraftId), () -> {
+                    loadAircraft(model);
+                    JOptionPane.showMessageDialog(this, "Aircraft deleted successfully!");
+                });
             }
         });
 
@@ -658,9 +669,10 @@ public class SuperAdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
             
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteRoute(routeId);
-                loadRoutes(model);
-                JOptionPane.showMessageDialog(this, "Route deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteRoute(routeId), () -> {
+                    loadRoutes(model);
+                    JOptionPane.showMessageDialog(this, "Route deleted successfully!");
+                });
             }
         });
 
@@ -981,7 +993,11 @@ public class SuperAdminDashboardFrame extends JFrame {
     }
 
     private void loadFlights(DefaultTableModel model) {
-        model.setRowCount(0);
+        flightsLoader.load(this::flightRows, rows -> UiTasks.setRows(model, rows));
+    }
+
+    private List<Object[]> flightRows() {
+        List<Object[]> rows = new ArrayList<>();
         List<Flight> flights = flightService.getAllFlights();
         for (Flight flight : flights) {
             Route route = flightService.getRouteById(flight.getRouteId());
@@ -999,8 +1015,9 @@ public class SuperAdminDashboardFrame extends JFrame {
                 String.format("$%.2f", flight.getPrice()),
                 flight.getStatus() != null ? flight.getStatus() : "SCHEDULED"
             };
-            model.addRow(row);
+            rows.add(row);
         }
+        return rows;
     }
 
     private void loadAircraft(DefaultTableModel model) {
@@ -1035,10 +1052,14 @@ public class SuperAdminDashboardFrame extends JFrame {
     }
 
     private void loadCustomers(DefaultTableModel model) {
-        model.setRowCount(0);
+        customersLoader.load(this::customerRows, rows -> UiTasks.setRows(model, rows));
+    }
+
+    private List<Object[]> customerRows() {
+        List<Object[]> rows = new ArrayList<>();
         List<Customer> customers = userService.getAllCustomers();
         for (Customer customer : customers) {
-            int bookingCount = bookingService.getCustomerTickets(customer.getId()).size();
+            int bookingCount = bookingService.getCustomerTicketCount(customer.getId());
             Object[] row = {
                 customer.getId(),
                 customer.getName(),
@@ -1047,8 +1068,9 @@ public class SuperAdminDashboardFrame extends JFrame {
                 customer.getGender(),
                 bookingCount
             };
-            model.addRow(row);
+            rows.add(row);
         }
+        return rows;
     }
 
     // Dialog methods
@@ -1129,15 +1151,17 @@ public class SuperAdminDashboardFrame extends JFrame {
                     return;
                 }
 
-                if (userService.addAdmin(name, phone, email, gender, password, isSuperAdmin)) {
-                    loadAdmins(model);
-                    refreshStatistics(); // Refresh statistics after adding admin
-                    dialog.dispose();
-                    String roleText = isSuperAdmin ? "Super Admin" : "Admin";
-                    JOptionPane.showMessageDialog(this, roleText + " added successfully!");
-                } else {
-                    JOptionPane.showMessageDialog(dialog, "Email already exists!");
-                }
+                UiTasks.run(saveBtn, () -> userService.addAdmin(name, phone, email, gender, password, isSuperAdmin), added -> {
+                    if (added) {
+                        loadAdmins(model);
+                        refreshStatistics(); // Refresh statistics after adding admin
+                        dialog.dispose();
+                        String roleText = isSuperAdmin ? "Super Admin" : "Admin";
+                        JOptionPane.showMessageDialog(this, roleText + " added successfully!");
+                    } else {
+                        JOptionPane.showMessageDialog(dialog, "Email already exists!");
+                    }
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -1240,11 +1264,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                     selectedAdmin.setPassword(password);
                 }
 
-                userService.updateAdmin(selectedAdmin);
-                loadAdmins(model);
-                refreshStatistics(); // istics after updating admin
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Admin updated successfully!");
+                UiTasks.run(saveBtn, () -> userService.updateAdmin(selectedAdmin), () -> {
+                    loadAdmins(model);
+                    refreshStatistics(); // istics after updating admin
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Admin updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -1385,10 +1410,9 @@ public class SuperAdminDashboardFrame extends JFrame {
 
         // Seat availability information
         if (aircraft != null) {
-            List<FlightSeat> flightSeats = flightService.getFlightSeats(flight.getId());
             int totalSeats = aircraft.getCapacity();
-            int availableSeats = (int) flightSeats.stream().filter(FlightSeat::isAvailable).count();
-            int soldSeats = (int) flightSeats.stream().filter(FlightSeat::isSold).count();
+            int availableSeats = flightService.getAvailableSeatsCount(flight.getId());
+            int soldSeats = flightService.getSoldSeatsCount(flight.getId());
 
             gbc.gridx = 0; gbc.gridy = 4;
             detailsPanel.add(new JLabel("Available Seats:"), gbc);
@@ -1632,19 +1656,25 @@ public class SuperAdminDashboardFrame extends JFrame {
                                          departureTime, arrivalTime, price);
 
                 // Handle gate assignment
-                if (gateCombo.getSelectedIndex() > 0) { // 0 is "No Gate Assigned"
-                    Gate selectedGate = availableGates.get(gateCombo.getSelectedIndex() - 1);
+                Gate selectedGate = gateCombo.getSelectedIndex() > 0 // 0 is "No Gate Assigned"
+                        ? availableGates.get(gateCombo.getSelectedIndex() - 1) : null;
+                if (selectedGate != null) {
                     flight.setGateId(selectedGate.getId());
                     // Mark gate as occupied
                     selectedGate.setCurrentFlightId(flightId);
-                    flightService.updateGate(selectedGate);
                 }
 
-                flightService.addFlight(flight);
-                loadFlights(model);
-                refreshStatistics(); // Refresh statistics after adding flight
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Flight added successfully!");
+                UiTasks.run(saveBtn, () -> {
+                    if (selectedGate != null) {
+                        flightService.updateGate(selectedGate);
+                    }
+                    flightService.addFlight(flight);
+                }, () -> {
+                    loadFlights(model);
+                    refreshStatistics(); // Refresh statistics after adding flight
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Flight added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage() + 
                     "\nPlease use format YYYY-MM-DDTHH:MM for date/time fields.");
@@ -1782,11 +1812,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                 flight.setArrivalTime(arrivalTime);
                 flight.setPrice(price);
 
-                flightService.updateFlight(flight);
-                loadFlights(model);
-                refreshStatistics(); // Refresh statistics after updating flight
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Flight updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateFlight(flight), () -> {
+                    loadFlights(model);
+                    refreshStatistics(); // Refresh statistics after updating flight
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Flight updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage() + 
                     "\nPlease use format YYYY-MM-DDTHH:MM for date/time fields.");
@@ -1949,11 +1980,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                 }
 
                 Aircraft aircraft = new Aircraft(aircraftId, modelText, registration, capacity, manufacturer, imagePath);
-                flightService.addAircraft(aircraft);
-                loadAircraft(model);
-                refreshStatistics(); // Refresh statistics after adding aircraft
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Aircraft added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addAircraft(aircraft), () -> {
+                    loadAircraft(model);
+                    refreshStatistics(); // Refresh statistics after adding aircraft
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Aircraft added successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Capacity must be a valid number!");
             } catch (Exception ex) {
@@ -2047,11 +2079,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                 }
 
                 Route route = new Route(routeId, departure, arrival, distance, duration);
-                flightService.addRoute(route);
-                loadRoutes(model);
-                refreshStatistics(); // Refresh statistics after adding route
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Route added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addRoute(route), () -> {
+                    loadRoutes(model);
+                    refreshStatistics(); // Refresh statistics after adding route
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Route added successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Distance and duration must be valid numbers!");
             } catch (Exception ex) {
@@ -2132,10 +2165,11 @@ public class SuperAdminDashboardFrame extends JFrame {
                 route.setDistance(distance);
                 route.setDuration(duration);
 
-                flightService.updateRoute(route);
-                loadRoutes(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Route updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateRoute(route), () -> {
+                    loadRoutes(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Route updated successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Distance and duration must be valid numbers!");
             } catch (Exception ex) {
@@ -2394,10 +2428,11 @@ public class SuperAdminDashboardFrame extends JFrame {
                 aircraft.setManufacturer(manufacturer);
                 aircraft.setImagePath(imagePath);
 
-                flightService.updateAircraft(aircraft);
-                loadAircraft(model);
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Aircraft updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateAircraft(aircraft), () -> {
+                    loadAircraft(model);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Aircraft updated successfully!");
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Capacity must be a valid number!");
             } catch (Exception ex) {
@@ -2479,10 +2514,11 @@ public class SuperAdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
                 
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteGate(gateId);
-                loadGates(model);
-                refreshStatistics();
-                JOptionPane.showMessageDialog(this, "Gate deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteGate(gateId), () -> {
+                    loadGates(model);
+                    refreshStatistics();
+                    JOptionPane.showMessageDialog(this, "Gate deleted successfully!");
+                });
             }
         });
 
@@ -2560,10 +2596,11 @@ public class SuperAdminDashboardFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
                 
             if (result == JOptionPane.YES_OPTION) {
-                flightService.deleteTerminal(terminalId);
-                loadTerminals(model);
-                refreshStatistics();
-                JOptionPane.showMessageDialog(this, "Terminal deleted successfully!");
+                UiTasks.run(deleteBtn, () -> flightService.deleteTerminal(terminalId), () -> {
+                    loadTerminals(model);
+                    refreshStatistics();
+                    JOptionPane.showMessageDialog(this, "Terminal deleted successfully!");
+                });
             }
         });
 
@@ -2670,11 +2707,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                 String terminalId = terminals.get(terminalCombo.getSelectedIndex()).getId();
                 
                 Gate gate = new Gate(gateId, gateNumber, terminalId);
-                flightService.addGate(gate);
-                loadGates(model);
-                refreshStatistics();
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Gate added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addGate(gate), () -> {
+                    loadGates(model);
+                    refreshStatistics();
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Gate added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2752,11 +2790,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                 gate.setGateNumber(gateNumber);
                 gate.setTerminal(terminalId);
                 
-                flightService.updateGate(gate);
-                loadGates(model);
-                refreshStatistics();
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Gate updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateGate(gate), () -> {
+                    loadGates(model);
+                    refreshStatistics();
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Gate updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2813,11 +2852,12 @@ public class SuperAdminDashboardFrame extends JFrame {
 
                 String terminalId = "T" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
                 Terminal terminal = new Terminal(terminalId, name, type);
-                flightService.addTerminal(terminal);
-                loadTerminals(model);
-                refreshStatistics();
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Terminal added successfully!");
+                UiTasks.run(saveBtn, () -> flightService.addTerminal(terminal), () -> {
+                    loadTerminals(model);
+                    refreshStatistics();
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Terminal added successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2876,11 +2916,12 @@ public class SuperAdminDashboardFrame extends JFrame {
                 terminal.setName(name);
                 terminal.setType(type);
                 
-                flightService.updateTerminal(terminal);
-                loadTerminals(model);
-                refreshStatistics();
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "Terminal updated successfully!");
+                UiTasks.run(updateBtn, () -> flightService.updateTerminal(terminal), () -> {
+                    loadTerminals(model);
+                    refreshStatistics();
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Terminal updated successfully!");
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
             }
@@ -2938,11 +2979,12 @@ public class SuperAdminDashboardFrame extends JFrame {
         updateBtn.addActionListener(e -> {
             String newStatus = (String) statusCombo.getSelectedItem();
             flight.setStatus(newStatus);
-            flightService.updateFlight(flight);
-            loadFlights(model);
-            refreshStatistics();
-            dialog.dispose();
-            JOptionPane.showMessageDialog(this, "Flight status updated successfully!");
+            UiTasks.run(updateBtn, () -> flightService.updateFlight(flight), () -> {
+                loadFlights(model);
+                refreshStatistics();
+                dialog.dispose();
+                JOptionPane.showMessageDialog(this, "Flight status updated successfully!");
+            });
         });
 
         cancelBtn.addActionListener(e -> dialog.dispose());
@@ -2997,11 +3039,12 @@ public class SuperAdminDashboardFrame extends JFrame {
         updateBtn.addActionListener(e -> {
             String newStatus = (String) statusCombo.getSelectedItem();
             aircraft.setStatus(newStatus);
-            flightService.updateAircraft(aircraft);
-            loadAircraft(model);
-            refreshStatistics();
-            dialog.dispose();
-            JOptionPane.showMessageDialog(this, "Aircraft status updated successfully!");
+            UiTasks.run(updateBtn, () -> flightService.updateAircraft(aircraft), () -> {
+                loadAircraft(model);
+                refreshStatistics();
+                dialog.dispose();
+                JOptionPane.showMessageDialog(this, "Aircraft status updated successfully!");
+            });
         });
 
         cancelBtn.addActionListener(e -> dialog.dispose());
@@ -0,0 +1,206 @@
+package view;
+
+import util.DataDirectoryWatcher;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Runs the views' service calls (reloads, purchases, saves, and table loads that may read
+// data files) on a few background threads instead of the Event Dispatch Thread, and hands
+// their results back on the EDT. While a call is running its window shows the busy cursor
+// and the button that started it is disabled. A Loader keeps one view element, like a
+// table, to its latest request: a new load cancels the one still running, and a
+// superseded result is never applied.
+final class UiTasks {
+
+    // A service call to run in the background
+    interface Call<T> {
+        T call() throws Exception;
+    }
+
+    // A service call with no result, like a save
+    interface Action {
+        void run() throws Exception;
+    }
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    // Calls in progress per window, to restore its cursor when the last one ends; EDT only
+    private static final Map<Window, Integer> pending = new WeakHashMap<>();
+
+    private UiTasks() {
+    }
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "ui-data");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Run call in the background and pass its result to onDone on the EDT; must be called
+    // on the EDT. A failed call is reported instead.
+    static <T> void run(Component source, Call<T> call, Consumer<? super T> onDone) {
+        new Task<>(source, call, onDone, null).start();
+    }
+
+    static void run(Component source, Action action, Runnable onDone) {
+        run(source, () -> {
+            action.run();
+            return null;
+        }, result -> onDone.run());
+    }
+
+    // Without the data directory watcher (-Ddata.watch=false) nothing tells a view about
+    // other instances' changes, so check when window is activated instead: reload runs in
+    // the background, returns true if it reloaded anything, and onChanged then refreshes
+    // the view. Does nothing while the watcher runs.
+    static void reloadOnActivation(Window window, Call<Boolean> reload, Runnable onChanged) {
+        if (DataDirectoryWatcher.isEnabled()) {
+            return;
+        }
+        Loader loader = new Loader(null);
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowActivated(WindowEvent e) {
+                loader.load(reload, changed -> {
+                    if (changed) {
+                        onChanged.run();
+                    }
+                });
+            }
+        });
+    }
+
+    // Replace the rows of model; on the EDT
+    static void setRows(DefaultTableModel model, List<Object[]> rows) {
+        model.setRowCount(0);
+        for (Object[] row : rows) {
+            model.addRow(row);
+        }
+    }
+
+    // Runs the loads of one view element, latest first
+    static final class Loader {
+        private final Component source;
+        private Task<?> current; // EDT only
+
+        Loader(Component source) {
+            this.source = source;
+        }
+
+        <T> void load(Call<T> call, Consumer<? super T> onDone) {
+            cancel();
+            current = new Task<>(source, call, onDone, this);
+            current.start();
+        }
+
+        void cancel() {
+            if (current != null) {
+                // Not interrupted: an interrupt would close the file channels the call
+                // may be writing. It runs to the end and its result is dropped.
+                current.cancel(false);
+                current = null;
+            }
+        }
+    }
+
+    private static final class Task<T> extends SwingWorker<T, Void> {
+        private final Component source;
+        private final Call<T> call;
+        private final Consumer<? super T> onDone;
+        private final Loader loader;
+        private boolean busy;
+        private Window window;
+
+        Task(Component source, Call<T> call, Consumer<? super T> onDone, Loader loader) {
+            this.source = source;
+            this.call = call;
+            this.onDone = onDone;
+            this.loader = loader;
+        }
+
+        void start() {
+            setBusy(true);
+            EXECUTOR.execute(this);
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            return call.call();
+        }
+
+        @Override
+        protected void done() {
+            setBusy(false);
+            if (loader != null) {
+                if (loader.current != this) {
+                    return;
+                }
+                loader.current = null;
+            }
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                onDone.accept(get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Error loading data: " + cause.getMessage());
+                JOptionPane.showMessageDialog(windowOf(source), "Operation failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void setBusy(boolean on) {
+            if (busy == on) {
+                return;
+            }
+            busy = on;
+            if (loader == null && source instanceof AbstractButton) {
+                source.setEnabled(!on);
+            }
+            if (on) {
+                window = windowOf(source);
+            }
+            if (window == null) {
+                return;
+            }
+            int count = pending.getOrDefault(window, 0) + (on ? 1 : -1);
+            if (count > 0) {
+                pending.put(window, count);
+                window.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            } else {
+                pending.remove(window);
+                window.setCursor(null);
+            }
+        }
+    }
+
+    private static Window windowOf(Component component) {
+        if (component == null || component instanceof Window) {
+            return (Window) component;
+        }
+        return SwingUtilities.getWindowAncestor(component);
+    }
+}